@@ -42,7 +42,7 @@ public class ChatConfiguration {
         this.toolCallbackProvider = tools;
 
         if (tools != null) {
-            log.info("✅ MCP tools will be integrated into ChatClient");
+            log.info("✅ MCP tools will be passed to ChatClient per request");
             try {
                 log.info("🔍 Tool callback provider class: {}", tools.getClass().getSimpleName());
             } catch (Exception e) {
@@ -52,32 +52,11 @@ public class ChatConfiguration {
             log.warn("⚠️  No MCP tools available - running without tool integration");
         }
 
-        var chatClientBuilderWithTools = chatClientBuilder;
-
-        if (tools != null) {
-            try {
-                var toolCallbacks = tools.getToolCallbacks();
-                chatClientBuilderWithTools = chatClientBuilder.defaultToolCallbacks(toolCallbacks);
-                log.info("🔧 Registered {} tool callbacks with ChatClient", toolCallbacks.length);
-
-                // Log each tool for debugging
-                for (int i = 0; i < toolCallbacks.length; i++) {
-                    try {
-                        var tool = toolCallbacks[i];
-                        String toolName = tool.getToolDefinition() != null ? tool.getToolDefinition().name() : "unknown";
-                        String toolDescription = tool.getToolDefinition() != null ? tool.getToolDefinition().description() : "no description";
-                        log.info("🛠️  Tool [{}]: {} - {}", i + 1, toolName,
-                                toolDescription.length() > 100 ? toolDescription.substring(0, 100) + "..." : toolDescription);
-                    } catch (Exception e) {
-                        log.warn("Could not inspect tool {}: {}", i + 1, e.getMessage());
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Failed to register tools with ChatClient: {}", e.getMessage());
-            }
-        }
-
-        return chatClientBuilderWithTools.build();
+        // Tools are not registered as ChatClient defaults: MCP servers come and go at runtime,
+        // so MessageRetriever resolves the current tool set and passes it on every request.
+        // Defaults would also leak every tool schema into the query rewrite call. The tool
+        // provider logs each tool set it builds, so nothing is resolved here at startup.
+        return chatClientBuilder.build();
     }
 
     /**
@@ -94,10 +73,10 @@ public class ChatConfiguration {
             try {
                 String toolProviderClass = toolCallbackProvider.getClass().getSimpleName();
                 log.info("🛠️  Tool Provider: {}", toolProviderClass);
-                log.info("✅ MCP Tools: REGISTERED");
+                log.info("✅ MCP Tools: AVAILABLE, resolved per request");
             } catch (Exception e) {
                 log.warn("⚠️  Error inspecting tool provider: {}", e.getMessage());
-                log.info("🛠️  MCP Tools: REGISTERED but not inspectable");
+                log.info("🛠️  MCP Tools: AVAILABLE but not inspectable");
             }
         } else {
             log.warn("❌ MCP Tools: NONE DISCOVERED");
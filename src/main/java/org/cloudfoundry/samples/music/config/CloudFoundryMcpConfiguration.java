@@ -14,7 +14,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 
 import jakarta.annotation.PostConstruct;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -58,7 +61,6 @@ public class CloudFoundryMcpConfiguration {
                 for (JsonNode service : userProvidedServices) {
                     if (isMcpService(service)) {
                         configureMcpFromService(service);
-                        break;
                     }
                 }
             }
@@ -117,6 +119,10 @@ public class CloudFoundryMcpConfiguration {
 
             // Derive base URL with multiple fallback options
             String baseUrl = deriveBaseUrl(credentials, serviceName);
+            List<String> instanceUrls = deriveInstanceUrls(credentials, baseUrl);
+            if (!instanceUrls.isEmpty()) {
+                baseUrl = instanceUrls.get(0);
+            }
 
             // Create CF-bound connection (in-memory only, not persisted)
             logger.info("Creating ephemeral MCP server connection from CF binding: {}", serviceName);
@@ -124,6 +130,10 @@ public class CloudFoundryMcpConfiguration {
             cfConnection.setId(UUID.randomUUID()); // Generate UUID for CF-bound connections
             cfConnection.setName(serviceName);
             cfConnection.setBaseUrl(baseUrl);
+            if (instanceUrls.size() > 1) {
+                cfConnection.setReplicaBaseUrls(instanceUrls.subList(1, instanceUrls.size()));
+                logger.info("MCP service '{}' is load balanced across {} instances", serviceName, instanceUrls.size());
+            }
             cfConnection.setEndpoint(endpoint);
             cfConnection.setEnabled(true);
 
@@ -184,6 +194,30 @@ public class CloudFoundryMcpConfiguration {
         return "http://localhost:8080";
     }
 
+    /**
+     * Every instance of a scaled-out MCP server: either listed as {@code urls}, or
+     * {@code instances} of a {@code *.apps.internal} route, which container networking
+     * exposes per instance as {@code <index>.<host>.apps.internal}.
+     */
+    private List<String> deriveInstanceUrls(JsonNode credentials, String baseUrl) {
+        List<String> urls = new ArrayList<>();
+        JsonNode urlsNode = credentials.get("urls");
+        if (urlsNode != null && urlsNode.isArray()) {
+            urlsNode.forEach(url -> urls.add(url.asText()));
+            return urls;
+        }
+
+        int instances = credentials.has("instances") ? credentials.get("instances").asInt(1) : 1;
+        URI uri = URI.create(baseUrl);
+        if (instances > 1 && uri.getHost() != null && uri.getHost().endsWith(".apps.internal")) {
+            for (int index = 0; index < instances; index++) {
+                String port = uri.getPort() > 0 ? ":" + uri.getPort() : "";
+                urls.add("%s://%d.%s%s".formatted(uri.getScheme(), index, uri.getHost(), port));
+            }
+        }
+        return urls;
+    }
+
     private Map<String, String> parseHeaders(JsonNode credentials) {
         Map<String, String> headers = new HashMap<>();
 
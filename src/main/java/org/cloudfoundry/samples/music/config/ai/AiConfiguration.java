@@ -16,20 +16,46 @@
 
 package org.cloudfoundry.samples.music.config.ai;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import io.pivotal.cfenv.boot.genai.GenaiLocator;
+import org.cloudfoundry.samples.music.domain.Album;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.embedding.BatchingStrategy;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.transaction.PlatformTransactionManager;
 
 /**
  *
@@ -42,14 +68,175 @@ public class AiConfiguration {
 
 	@Bean
 	@ConditionalOnMissingBean
-	public VectorStoreInitializer vectorStoreInitializer(VectorStore vectorStore) {
-		return new VectorStoreInitializer(vectorStore);
+	public EmbeddingIngestionPipeline embeddingIngestionPipeline(VectorStore vectorStore, MeterRegistry meterRegistry,
+			@Value("${spring-metal.ai.ingestion.batch-size:32}") int batchSize,
+			@Value("${spring-metal.ai.ingestion.max-concurrency:4}") int maxConcurrency,
+			@Value("${spring-metal.ai.ingestion.max-retries:5}") int maxRetries,
+			@Value("${spring-metal.ai.ingestion.initial-backoff:500ms}") Duration initialBackoff,
+			@Value("${spring-metal.ai.ingestion.max-backoff:30s}") Duration maxBackoff) {
+		return new EmbeddingIngestionPipeline(vectorStore, meterRegistry, Executors.newVirtualThreadPerTaskExecutor(),
+				batchSize, maxConcurrency, maxRetries, initialBackoff, maxBackoff);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public VectorDocumentIndex vectorDocumentIndex(VectorStore vectorStore,
+			@Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+			@Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
+		return new VectorDocumentIndex(jdbcTemplateOf(vectorStore), schemaName, tableName);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public VectorStoreInitializer vectorStoreInitializer(VectorStore vectorStore,
+			EmbeddingIngestionPipeline ingestionPipeline, VectorDocumentIndex vectorDocumentIndex) {
+		return new VectorStoreInitializer(vectorStore, ingestionPipeline, vectorDocumentIndex);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "spring-metal.ai.album-sync", name = "enabled", matchIfMissing = true)
+	public AlbumVectorSync albumVectorSync(VectorStore vectorStore, EmbeddingIngestionPipeline ingestionPipeline,
+			VectorDocumentIndex vectorDocumentIndex, CrudRepository<Album, String> albumRepository,
+			@Value("${spring-metal.ai.album-sync.delay:2s}") Duration delay,
+			@Value("${spring-metal.ai.album-sync.retry-delay:30s}") Duration retryDelay,
+			@Value("${spring-metal.ai.album-sync.max-attempts:3}") int maxAttempts,
+			ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+		return new AlbumVectorSync(vectorStore, ingestionPipeline, vectorDocumentIndex, albumRepository, delay,
+				retryDelay, maxAttempts, eventPublisher, meterRegistry);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public VectorReindexJob vectorReindexJob(VectorStore vectorStore, EmbeddingModel embeddingModel,
+			ObjectProvider<BatchingStrategy> batchingStrategy, EmbeddingIngestionPipeline ingestionPipeline, CrudRepository<Album, String> albumRepository,
+			VectorStoreInitializer vectorStoreInitializer, ObjectMapper objectMapper,
+			@Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+			@Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName,
+			@Value("${spring.ai.vectorstore.pgvector.index-type:HNSW}") String indexType,
+			@Value("${spring.ai.vectorstore.pgvector.distance-type:COSINE_DISTANCE}") String distanceType,
+			@Value("${spring-metal.ai.reindex.batch-size:64}") int batchSize) {
+		// The strategy the pgvector auto-configuration hands to PgVectorStore
+		return new VectorReindexJob(jdbcTemplateOf(vectorStore), embeddingModel,
+				batchingStrategy.getIfUnique(TokenCountBatchingStrategy::new), ingestionPipeline, albumRepository,
+				vectorStoreInitializer, objectMapper, schemaName, tableName, indexType, distanceType, batchSize);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public BulkAlbumIngestion bulkAlbumIngestion(ObjectMapper objectMapper,
+			CrudRepository<Album, String> albumRepository, EmbeddingIngestionPipeline ingestionPipeline,
+			VectorDocumentIndex vectorDocumentIndex, ApplicationEventPublisher eventPublisher,
+			@Value("${spring-metal.ai.ingestion.bulk-batch-size:256}") int batchSize) {
+		return new BulkAlbumIngestion(objectMapper, albumRepository, ingestionPipeline, vectorDocumentIndex,
+				eventPublisher, batchSize);
+	}
+
+	// PgVectorStore exposes its JdbcTemplate as the native client
+	private static JdbcTemplate jdbcTemplateOf(VectorStore vectorStore) {
+		Optional<Object> nativeClient = vectorStore.getNativeClient();
+		return nativeClient.filter(JdbcTemplate.class::isInstance).map(JdbcTemplate.class::cast).orElse(null);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public QueryRewriteCache queryRewriteCache(
+			@Value("${spring-metal.ai.rewrite-cache.max-size:500}") int maxSize,
+			@Value("${spring-metal.ai.rewrite-cache.ttl:30m}") Duration ttl,
+			MeterRegistry meterRegistry) {
+		return new QueryRewriteCache(maxSize, ttl, meterRegistry);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "spring-metal.ai.answer-cache", name = "enabled", matchIfMissing = true)
+	public SemanticAnswerCache semanticAnswerCache(EmbeddingModel embeddingModel,
+			@Value("${spring-metal.ai.answer-cache.max-size:200}") int maxSize,
+			@Value("${spring-metal.ai.answer-cache.ttl:15m}") Duration ttl,
+			@Value("${spring-metal.ai.answer-cache.similarity-threshold:0.92}") double similarityThreshold,
+			MeterRegistry meterRegistry) {
+		return new SemanticAnswerCache(embeddingModel, maxSize, ttl, similarityThreshold, meterRegistry);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public TokenCountEstimator tokenCountEstimator() {
+		return new JTokkitTokenCountEstimator();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "spring-metal.ai.conversation-memory", name = "store", havingValue = "memory", matchIfMissing = true)
+	public ChatMemoryRepository chatMemoryRepository(
+			@Value("${spring-metal.ai.conversation-memory.max-conversations:1000}") int maxConversations,
+			@Value("${spring-metal.ai.conversation-memory.idle-timeout:30m}") Duration idleTimeout,
+			MeterRegistry meterRegistry) {
+		return new BoundedChatMemoryRepository(maxConversations, idleTimeout, meterRegistry);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "spring-metal.ai.conversation-memory", name = "store", havingValue = "jdbc")
+	public ChatMemoryRepository jdbcChatMemoryRepository(JdbcTemplate jdbcTemplate,
+			PlatformTransactionManager transactionManager,
+			@Value("${spring-metal.ai.conversation-memory.idle-timeout:30m}") Duration idleTimeout) {
+		return new JdbcChatMemoryRepository(jdbcTemplate, transactionManager, idleTimeout);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public ChatMemory chatMemory(ChatMemoryRepository chatMemoryRepository, TokenCountEstimator tokenCountEstimator,
+			@Value("${spring-metal.ai.conversation-memory.max-tokens:2000}") int maxTokens) {
+		return new TokenWindowChatMemory(chatMemoryRepository, tokenCountEstimator, maxTokens);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public PromptAssembler promptAssembler(TokenCountEstimator tokenCountEstimator,
+			@Value("${spring-metal.ai.prompt-budget.max-tokens:6000}") int maxTokens) {
+		return new PromptAssembler(tokenCountEstimator, maxTokens);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "spring-metal.ai.tool-selection", name = "enabled", matchIfMissing = true)
+	public ToolSelector toolSelector(EmbeddingModel embeddingModel,
+			@Value("${spring-metal.ai.tool-selection.top-k:5}") int topK,
+			@Value("${spring-metal.ai.tool-selection.always-include:}") Set<String> alwaysInclude) {
+		return new ToolSelector(embeddingModel, topK, alwaysInclude);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "spring-metal.ai.tool-execution", name = "parallel", matchIfMissing = true)
+	public ToolCallingManager toolCallingManager(ObjectProvider<ObservationRegistry> observationRegistry,
+			ToolCallbackResolver toolCallbackResolver, ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+			@Value("${spring-metal.ai.tool-execution.max-concurrency:4}") int maxConcurrency,
+			@Value("${spring-metal.ai.tool-execution.timeout:20s}") Duration timeout) {
+		ToolCallingManager defaultManager = ToolCallingManager.builder()
+			.observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+			.toolCallbackResolver(toolCallbackResolver)
+			.toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
+			.build();
+		return new ParallelToolCallingManager(defaultManager, toolCallbackResolver, toolExecutionExceptionProcessor,
+				Executors.newVirtualThreadPerTaskExecutor(), maxConcurrency, timeout);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public ChatPipelineMetrics chatPipelineMetrics(MeterRegistry meterRegistry, ChatModel chatModel) {
+		ChatOptions defaultOptions = chatModel.getDefaultOptions();
+		return new ChatPipelineMetrics(meterRegistry, defaultOptions != null ? defaultOptions.getModel() : null);
 	}
 
 	@Bean
 	@ConditionalOnMissingBean
-	public MessageRetriever messageRetriever(VectorStore vectorStore, ChatClient chatClient) {
-		return new MessageRetriever(vectorStore, chatClient);
+	public MessageRetriever messageRetriever(VectorStore vectorStore, ChatClient chatClient,
+			QueryRewriteCache queryRewriteCache, ObjectProvider<SemanticAnswerCache> semanticAnswerCache,
+			ChatPipelineMetrics chatPipelineMetrics, PromptAssembler promptAssembler,
+			ObjectProvider<ToolSelector> toolSelector) {
+		return new MessageRetriever(vectorStore, chatClient, queryRewriteCache, semanticAnswerCache.getIfAvailable(),
+				chatPipelineMetrics, promptAssembler, toolSelector.getIfAvailable());
 	}
 
 	@Configuration
@@ -60,13 +247,21 @@ public class AiConfiguration {
 		@Bean
 		@Primary
 		@ConditionalOnMissingBean
-		public ChatModel chatModel(GenaiLocator genaiLocator) {
+		public ChatModel chatModel(GenaiLocator genaiLocator, ObjectProvider<ToolCallingManager> toolCallingManager) {
+			ChatModel chatModel;
 			try {
-				return genaiLocator.getFirstAvailableChatModel();
+				chatModel = genaiLocator.getFirstAvailableChatModel();
 			} catch (Exception e) {
 				// No chat model available, return null or throw a more specific exception
 				throw new IllegalStateException("No chat model available from GenAI service", e);
 			}
+			// The locator builds its model with Spring AI's default tool calling manager, so
+			// rebuild it around ours to run the tool calls of a turn concurrently here too
+			ToolCallingManager manager = toolCallingManager.getIfUnique();
+			if (manager != null && chatModel instanceof OpenAiChatModel openAiChatModel) {
+				return openAiChatModel.mutate().toolCallingManager(manager).build();
+			}
+			return chatModel;
 		}
 
 		@Bean
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+import org.cloudfoundry.samples.music.domain.Album;
+import org.cloudfoundry.samples.music.web.AIController;
+import org.springframework.ai.document.Document;
+
+/**
+ * Builds the vector store document of an album. Every document carries a hash of its text
+ * in the {@value #CONTENT_HASH} metadata field, so a sync can tell which albums changed
+ * without embedding anything.
+ */
+public final class AlbumVectorDocuments {
+
+	public static final String CONTENT_HASH = "content_hash";
+
+	private AlbumVectorDocuments() {
+	}
+
+	public static Document toDocument(Album album) {
+		String text = AIController.generateVectorDoc(album);
+		Map<String, Object> metadata = new HashMap<>();
+		metadata.put(CONTENT_HASH, contentHash(text));
+		return new Document(album.getId(), text, metadata);
+	}
+
+	public static String contentHash(String text) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cloudfoundry.samples.music.config.ai.EmbeddingIngestionPipeline.IngestionResult;
+import org.cloudfoundry.samples.music.domain.Album;
+import org.cloudfoundry.samples.music.domain.AlbumChangedEvent;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Keeps the vector store in step with album writes on the server, whichever repository
+ * backend is active. Changed album ids are queued, so several edits of one album within
+ * {@code delay} become a single update, and are then embedded in batches on a background
+ * thread. The queue only holds ids: each flush reads the album's current state, and the
+ * repository stays the durable record, so a change lost to a failure is retried and one lost
+ * to a restart is picked up by the content-hash sync of the {@link VectorStoreInitializer}.
+ * An album that still fails after {@code maxAttempts} flushes, such as a document the model
+ * rejects, is given up on until it changes again or the next startup sync. Every flush that
+ * wrote or deleted vectors publishes a {@link VectorsChangedEvent}.
+ */
+public class AlbumVectorSync {
+
+	private static final Logger logger = LoggerFactory.getLogger(AlbumVectorSync.class);
+
+	public static final String PENDING_GAUGE = "spring.metal.vector.sync.pending";
+
+	private final VectorStore vectorStore;
+
+	private final EmbeddingIngestionPipeline ingestionPipeline;
+
+	private final VectorDocumentIndex vectorDocumentIndex;
+
+	private final CrudRepository<Album, String> albumRepository;
+
+	private final long delayMillis;
+
+	private final long retryDelayMillis;
+
+	private final int maxAttempts;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	// Failed flushes per album since its last change
+	private final Map<String, Integer> failedAttempts = new ConcurrentHashMap<>();
+
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "album-vector-sync");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public AlbumVectorSync(VectorStore vectorStore, EmbeddingIngestionPipeline ingestionPipeline,
+			VectorDocumentIndex vectorDocumentIndex, CrudRepository<Album, String> albumRepository, Duration delay,
+			Duration retryDelay, int maxAttempts, ApplicationEventPublisher eventPublisher,
+			MeterRegistry meterRegistry) {
+		this.vectorStore = vectorStore;
+		this.ingestionPipeline = ingestionPipeline;
+		this.vectorDocumentIndex = vectorDocumentIndex;
+		this.albumRepository = albumRepository;
+		this.delayMillis = delay.toMillis();
+		this.retryDelayMillis = retryDelay.toMillis();
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.eventPublisher = eventPublisher;
+		Gauge.builder(PENDING_GAUGE, pending, Set::size)
+			.description("Album changes waiting to be synced to the vector store")
+			.register(meterRegistry);
+	}
+
+	@EventListener
+	public void onAlbumChanged(AlbumChangedEvent event) {
+		if (event.albumId() != null) {
+			failedAttempts.remove(event.albumId());
+			enqueue(List.of(event.albumId()), delayMillis);
+		}
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	private void enqueue(List<String> albumIds, long delay) {
+		pending.addAll(albumIds);
+		// Changes that arrive before the flush runs are picked up by it
+		if (flushScheduled.compareAndSet(false, true)) {
+			scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void flush() {
+		flushScheduled.set(false);
+		List<String> albumIds = new ArrayList<>(pending);
+		pending.removeAll(albumIds);
+		if (albumIds.isEmpty()) {
+			return;
+		}
+
+		boolean vectorsWritten = false;
+		try {
+			List<Document> documents = new ArrayList<>();
+			Set<String> deleted = new HashSet<>(albumIds);
+			for (Album album : albumRepository.findAllById(albumIds)) {
+				deleted.remove(album.getId());
+				documents.add(AlbumVectorDocuments.toDocument(album));
+			}
+
+			// Saves that did not change the album text need no embedding call
+			if (vectorDocumentIndex.isAvailable() && !documents.isEmpty()) {
+				Map<String, String> storedHashes = vectorDocumentIndex
+					.contentHashes(documents.stream().map(Document::getId).toList());
+				documents.removeIf(document -> Objects.equals(storedHashes.get(document.getId()),
+						document.getMetadata().get(AlbumVectorDocuments.CONTENT_HASH)));
+			}
+
+			if (!deleted.isEmpty()) {
+				vectorsWritten = true;
+				vectorStore.delete(List.copyOf(deleted));
+			}
+			List<String> failed = List.of();
+			if (!documents.isEmpty()) {
+				IngestionResult result = ingestionPipeline.ingest("album-write", documents);
+				failed = result.failedIds();
+				vectorsWritten |= result.succeeded() > 0;
+			}
+			logger.info("🔁 Synced {} album changes to the vector store ({} embedded, {} deleted)", albumIds.size(),
+					documents.size() - failed.size(), deleted.size());
+
+			Set<String> succeeded = new HashSet<>(albumIds);
+			failed.forEach(succeeded::remove);
+			failedAttempts.keySet().removeAll(succeeded);
+			if (!failed.isEmpty()) {
+				retry(failed, "albums could not be embedded");
+			}
+		}
+		catch (Exception e) {
+			retry(albumIds, "album changes failed to sync: " + e.getMessage());
+		}
+		finally {
+			// Answers cached since the album events were built from the vectors replaced here
+			if (vectorsWritten) {
+				eventPublisher.publishEvent(new VectorsChangedEvent("album-write"));
+			}
+		}
+	}
+
+	private void retry(List<String> albumIds, String reason) {
+		List<String> retrying = new ArrayList<>();
+		List<String> abandoned = new ArrayList<>();
+		for (String albumId : albumIds) {
+			if (failedAttempts.merge(albumId, 1, Integer::sum) >= maxAttempts) {
+				failedAttempts.remove(albumId);
+				abandoned.add(albumId);
+			}
+			else {
+				retrying.add(albumId);
+			}
+		}
+		if (!abandoned.isEmpty()) {
+			logger.warn("⚠️  {} {} after {} attempts, giving up until they change or the next startup sync: {}",
+					abandoned.size(), reason, maxAttempts, abandoned);
+		}
+		if (!retrying.isEmpty()) {
+			logger.warn("⚠️  {} {}, retrying in {} ms", retrying.size(), reason, retryDelayMillis);
+			enqueue(retrying, retryDelayMillis);
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.cloudfoundry.samples.music.service.support.ExpiringLruCache;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+/**
+ * In-memory {@link ChatMemoryRepository} that holds a bounded number of conversations.
+ * Every turn rewrites the conversation, so the time-to-live measures how long a
+ * conversation has been idle; idle conversations and, beyond the size cap, the least
+ * recently used ones are evicted.
+ */
+public class BoundedChatMemoryRepository implements ChatMemoryRepository {
+
+	private static final String CACHE_NAME = "conversation-memory";
+
+	private final ExpiringLruCache<String, List<Message>> conversations;
+
+	public BoundedChatMemoryRepository(int maxConversations, Duration idleTimeout, MeterRegistry meterRegistry) {
+		this.conversations = new ExpiringLruCache<>(maxConversations, idleTimeout);
+		Gauge.builder("cache.size", conversations, ExpiringLruCache::size).tag("cache", CACHE_NAME)
+			.register(meterRegistry);
+		Gauge.builder("cache.evictions", conversations, ExpiringLruCache::evictionCount).tag("cache", CACHE_NAME)
+			.register(meterRegistry);
+	}
+
+	@Override
+	public List<String> findConversationIds() {
+		return new ArrayList<>(conversations.snapshot().keySet());
+	}
+
+	@Override
+	public List<Message> findByConversationId(String conversationId) {
+		List<Message> messages = conversations.get(conversationId);
+		return messages != null ? messages : List.of();
+	}
+
+	@Override
+	public void saveAll(String conversationId, List<Message> messages) {
+		conversations.put(conversationId, List.copyOf(messages));
+	}
+
+	@Override
+	public void deleteByConversationId(String conversationId) {
+		conversations.remove(conversationId);
+	}
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cloudfoundry.samples.music.config.ai.EmbeddingIngestionPipeline.IngestionResult;
+import org.cloudfoundry.samples.music.domain.Album;
+import org.cloudfoundry.samples.music.domain.AlbumChangedEvent;
+import org.springframework.ai.document.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Loads albums from a newline-delimited JSON stream, one album per line. The body is read
+ * line by line while earlier batches are being embedded, so it is never held in memory as a
+ * whole. Each batch is saved to the album repository, keeping the catalog and the vector
+ * store in step, and albums whose text is already stored are not embedded again. When the
+ * body cannot be read to the end, for example because the client went away, the records read
+ * so far are still embedded and reported.
+ */
+public class BulkAlbumIngestion {
+
+	private static final Logger logger = LoggerFactory.getLogger(BulkAlbumIngestion.class);
+
+	public static final String STATUS_INDEXED = "indexed";
+
+	public static final String STATUS_UNCHANGED = "unchanged";
+
+	public static final String STATUS_FAILED = "failed";
+
+	public static final String STATUS_INVALID = "invalid";
+
+	private final ObjectMapper objectMapper;
+
+	private final CrudRepository<Album, String> albumRepository;
+
+	private final EmbeddingIngestionPipeline ingestionPipeline;
+
+	private final VectorDocumentIndex vectorDocumentIndex;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final int batchSize;
+
+	public BulkAlbumIngestion(ObjectMapper objectMapper, CrudRepository<Album, String> albumRepository,
+			EmbeddingIngestionPipeline ingestionPipeline, VectorDocumentIndex vectorDocumentIndex,
+			ApplicationEventPublisher eventPublisher, int batchSize) {
+		this.objectMapper = objectMapper;
+		this.albumRepository = albumRepository;
+		this.ingestionPipeline = ingestionPipeline;
+		this.vectorDocumentIndex = vectorDocumentIndex;
+		this.eventPublisher = eventPublisher;
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public BulkIngestionReport ingest(InputStream body) {
+		long start = System.nanoTime();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+		RecordReader records = new RecordReader(reader);
+		IngestionResult result;
+		try {
+			result = ingestionPipeline.ingest("bulk", () -> records, batchSize);
+		}
+		finally {
+			if (records.saved > 0) {
+				// One event for the whole load; the vectors are already written
+				eventPublisher.publishEvent(new AlbumChangedEvent(null));
+			}
+		}
+
+		for (String failedId : result.failedIds()) {
+			Integer index = records.resultIndexById.get(failedId);
+			if (index != null) {
+				RecordResult record = records.results.get(index);
+				records.results.set(index,
+						new RecordResult(record.line(), record.id(), STATUS_FAILED, "Embedding failed"));
+			}
+		}
+
+		BulkIngestionReport report = BulkIngestionReport.of(records.results, records.readError,
+				System.nanoTime() - start);
+		logger.info("📦 Bulk load of {} records: {} indexed, {} unchanged, {} failed, {} invalid in {} ms",
+				report.records(), report.indexed(), report.unchanged(), report.failed(), report.invalid(),
+				report.elapsedMillis());
+		return report;
+	}
+
+	/**
+	 * Reads, saves and converts one batch of records at a time as the pipeline asks for more
+	 * documents.
+	 */
+	private final class RecordReader implements Iterator<Document> {
+
+		private final BufferedReader reader;
+
+		private final Deque<Document> ready = new ArrayDeque<>();
+
+		private final List<RecordResult> results = new ArrayList<>();
+
+		private final Map<String, Integer> resultIndexById = new HashMap<>();
+
+		private int lineNumber;
+
+		private int saved;
+
+		private boolean exhausted;
+
+		private String readError;
+
+		private RecordReader(BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (ready.isEmpty() && !exhausted) {
+				readBatch();
+			}
+			return !ready.isEmpty();
+		}
+
+		@Override
+		public Document next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return ready.poll();
+		}
+
+		private void readBatch() {
+			List<Album> albums = new ArrayList<>(batchSize);
+			List<Integer> lines = new ArrayList<>(batchSize);
+			while (albums.size() < batchSize) {
+				String line = readLine();
+				if (line == null) {
+					exhausted = true;
+					break;
+				}
+				lineNumber++;
+				if (line.isBlank()) {
+					continue;
+				}
+				try {
+					albums.add(objectMapper.readValue(line, Album.class));
+					lines.add(lineNumber);
+				}
+				catch (JsonProcessingException e) {
+					results.add(new RecordResult(lineNumber, null, STATUS_INVALID, e.getOriginalMessage()));
+				}
+			}
+			if (albums.isEmpty()) {
+				return;
+			}
+
+			List<Album> savedAlbums = new ArrayList<>(albums.size());
+			try {
+				albumRepository.saveAll(albums).forEach(savedAlbums::add);
+			}
+			catch (RuntimeException e) {
+				for (int i = 0; i < albums.size(); i++) {
+					results.add(new RecordResult(lines.get(i), albums.get(i).getId(), STATUS_FAILED,
+							"Could not be saved: " + e.getMessage()));
+				}
+				return;
+			}
+			saved += savedAlbums.size();
+
+			List<Document> documents = savedAlbums.stream().map(AlbumVectorDocuments::toDocument).toList();
+			Map<String, String> storedHashes = storedHashes(documents);
+			for (int i = 0; i < documents.size(); i++) {
+				Document document = documents.get(i);
+				if (Objects.equals(storedHashes.get(document.getId()),
+						document.getMetadata().get(AlbumVectorDocuments.CONTENT_HASH))) {
+					results.add(new RecordResult(lines.get(i), document.getId(), STATUS_UNCHANGED, null));
+					continue;
+				}
+				resultIndexById.put(document.getId(), results.size());
+				results.add(new RecordResult(lines.get(i), document.getId(), STATUS_INDEXED, null));
+				ready.add(document);
+			}
+		}
+
+		// The albums are saved by now, so without the hashes they are simply embedded again
+		private Map<String, String> storedHashes(List<Document> documents) {
+			if (!vectorDocumentIndex.isAvailable()) {
+				return Map.of();
+			}
+			try {
+				return vectorDocumentIndex.contentHashes(documents.stream().map(Document::getId).toList());
+			}
+			catch (RuntimeException e) {
+				logger.warn("⚠️  Could not look up stored vectors, embedding {} albums again: {}", documents.size(),
+						e.getMessage());
+				return Map.of();
+			}
+		}
+
+		// A read failure ends the body; batches already handed to the pipeline still finish
+		private String readLine() {
+			try {
+				return reader.readLine();
+			}
+			catch (IOException e) {
+				logger.warn("⚠️  Bulk load body could not be read after line {}: {}", lineNumber, e.getMessage());
+				readError = "Body could not be read after line %d: %s".formatted(lineNumber, e.getMessage());
+				return null;
+			}
+		}
+
+	}
+
+	public record RecordResult(int line, String id, String status, String error) {
+	}
+
+	/**
+	 * Outcome of a bulk load; {@code readError} is set when the body ended early and only the
+	 * records before it were loaded.
+	 */
+	public record BulkIngestionReport(int records, int indexed, int unchanged, int failed, int invalid,
+			long elapsedMillis, double recordsPerSecond, String readError, List<RecordResult> results) {
+
+		public boolean isComplete() {
+			return readError == null && failed == 0 && invalid == 0;
+		}
+
+		static BulkIngestionReport of(List<RecordResult> results, String readError, long elapsedNanos) {
+			Map<String, Integer> counts = new HashMap<>();
+			results.forEach(result -> counts.merge(result.status(), 1, Integer::sum));
+			long elapsedMillis = elapsedNanos / 1_000_000;
+			double perSecond = elapsedMillis > 0 ? results.size() * 1000.0 / elapsedMillis : results.size();
+			return new BulkIngestionReport(results.size(), counts.getOrDefault(STATUS_INDEXED, 0),
+					counts.getOrDefault(STATUS_UNCHANGED, 0), counts.getOrDefault(STATUS_FAILED, 0),
+					counts.getOrDefault(STATUS_INVALID, 0), elapsedMillis, Math.round(perSecond * 10) / 10.0, readError,
+					results.stream().sorted(Comparator.comparingInt(RecordResult::line)).toList());
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer timers for each hop of the chat pipeline, published through the actuator
+ * metrics endpoint with percentile histograms so every stage can carry its own SLO.
+ *
+ * <ul>
+ * <li>{@code spring.metal.chat.stage} - tagged with {@code stage}, {@code model} and {@code outcome}</li>
+ * <li>{@code spring.metal.chat.prompt.tokens} - prompt size per request, tagged with {@code part} and {@code model}</li>
+ * </ul>
+ *
+ * <p>
+ * Tool calls that reach an MCP server are recorded once, by the MCP tool metrics: per
+ * connection and tool in {@code spring.metal.mcp.tool.calls} and as the {@code tool} stage
+ * here.
+ */
+public class ChatPipelineMetrics {
+
+	public static final String STAGE_TIMER = "spring.metal.chat.stage";
+
+	public static final String PROMPT_TOKENS = "spring.metal.chat.prompt.tokens";
+
+	public static final String STAGE_ANSWER_CACHE = "answer-cache";
+
+	public static final String STAGE_REWRITE = "rewrite";
+
+	public static final String STAGE_RETRIEVE = "retrieve";
+
+	public static final String STAGE_TOOL_SELECTION = "tool-selection";
+
+	public static final String STAGE_PROMPT_BUILD = "prompt-build";
+
+	public static final String STAGE_TOOL = "tool";
+
+	public static final String STAGE_GENERATION = "generation";
+
+	public static final String STAGE_FIRST_TOKEN = "first-token";
+
+	public static final String STAGE_POST_PROCESSING = "post-processing";
+
+	private final MeterRegistry meterRegistry;
+
+	private final String modelName;
+
+	public ChatPipelineMetrics(MeterRegistry meterRegistry, String modelName) {
+		this.meterRegistry = meterRegistry;
+		this.modelName = modelName != null ? modelName : "unknown";
+	}
+
+	public String getModelName() {
+		return modelName;
+	}
+
+	public <T> T time(String stage, Supplier<T> work) {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		String outcome = "error";
+		try {
+			T result = work.get();
+			outcome = "success";
+			return result;
+		}
+		finally {
+			sample.stop(stageTimer(stage, outcome));
+		}
+	}
+
+	public Timer.Sample start() {
+		return Timer.start(meterRegistry);
+	}
+
+	public void stop(Timer.Sample sample, String stage, boolean success) {
+		sample.stop(stageTimer(stage, success ? "success" : "error"));
+	}
+
+	public void record(String stage, long elapsedNanos, boolean success) {
+		stageTimer(stage, success ? "success" : "error").record(elapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void recordPromptTokens(PromptAssembler.TokenCounts tokens) {
+		promptTokens("system").record(tokens.system());
+		promptTokens("history").record(tokens.history());
+		promptTokens("documents").record(tokens.documents());
+		promptTokens("tools").record(tokens.tools());
+		promptTokens("user").record(tokens.user());
+		promptTokens("total").record(tokens.total());
+	}
+
+	private DistributionSummary promptTokens(String part) {
+		return DistributionSummary.builder(PROMPT_TOKENS)
+			.description("Estimated prompt tokens sent to the model")
+			.baseUnit("tokens")
+			.tag("part", part)
+			.tag("model", modelName)
+			.publishPercentiles(0.5, 0.95)
+			.register(meterRegistry);
+	}
+
+	private Timer stageTimer(String stage, String outcome) {
+		return Timer.builder(STAGE_TIMER)
+			.description("Latency of each chat pipeline stage")
+			.tag("stage", stage)
+			.tag("model", modelName)
+			.tag("outcome", outcome)
+			.publishPercentileHistogram()
+			.publishPercentiles(0.5, 0.95, 0.99)
+			.register(meterRegistry);
+	}
+
+}
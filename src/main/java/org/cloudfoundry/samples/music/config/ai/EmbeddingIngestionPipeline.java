@@ -0,0 +1,352 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.web.client.HttpStatusCodeException;
+
+/**
+ * Embeds documents into the {@link VectorStore} in batches, with several batches in flight
+ * at once. The number of concurrent embedding calls adapts to the embedding service: a rate
+ * limit (HTTP 429) or a timeout halves it and retries the batch after an exponential
+ * backoff, and successful batches let it grow back towards {@code maxConcurrency}. Any
+ * other failure skips the batch without slowing the rest down.
+ *
+ * <ul>
+ * <li>{@code spring.metal.vector.ingest.documents} - documents processed, tagged with {@code source} and {@code outcome}</li>
+ * <li>{@code spring.metal.vector.ingest.batch} - latency of each embedding call, tagged with {@code source} and {@code outcome}</li>
+ * <li>{@code spring.metal.vector.ingest.concurrency} - current limit of concurrent embedding calls</li>
+ * <li>{@code spring.metal.vector.ingest.in-flight} - batches being embedded right now</li>
+ * </ul>
+ */
+public class EmbeddingIngestionPipeline {
+
+	private static final Logger logger = LoggerFactory.getLogger(EmbeddingIngestionPipeline.class);
+
+	public static final String DOCUMENTS_COUNTER = "spring.metal.vector.ingest.documents";
+
+	public static final String BATCH_TIMER = "spring.metal.vector.ingest.batch";
+
+	public static final String CONCURRENCY_GAUGE = "spring.metal.vector.ingest.concurrency";
+
+	public static final String IN_FLIGHT_GAUGE = "spring.metal.vector.ingest.in-flight";
+
+	private final VectorStore vectorStore;
+
+	private final MeterRegistry meterRegistry;
+
+	private final ExecutorService executor;
+
+	private final int batchSize;
+
+	private final int maxConcurrency;
+
+	private final int maxRetries;
+
+	private final long initialBackoffMillis;
+
+	private final long maxBackoffMillis;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition permitReleased = lock.newCondition();
+
+	// Guarded by lock
+	private int concurrencyLimit;
+
+	private int inFlight;
+
+	private int successesSinceIncrease;
+
+	public EmbeddingIngestionPipeline(VectorStore vectorStore, MeterRegistry meterRegistry, ExecutorService executor,
+			int batchSize, int maxConcurrency, int maxRetries, Duration initialBackoff, Duration maxBackoff) {
+		this.vectorStore = vectorStore;
+		this.meterRegistry = meterRegistry;
+		this.executor = executor;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		this.maxRetries = Math.max(0, maxRetries);
+		this.initialBackoffMillis = Math.max(1, initialBackoff.toMillis());
+		this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoff.toMillis());
+		this.concurrencyLimit = this.maxConcurrency;
+		Gauge.builder(CONCURRENCY_GAUGE, this, EmbeddingIngestionPipeline::getConcurrencyLimit)
+			.description("Concurrent embedding calls currently allowed")
+			.register(meterRegistry);
+		Gauge.builder(IN_FLIGHT_GAUGE, this, EmbeddingIngestionPipeline::getInFlight)
+			.description("Embedding batches in flight")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Embed and store the documents, returning once every batch has finished. Documents are
+	 * read from the iterable only as fast as batches can be sent, so it may be backed by a
+	 * stream of any size.
+	 */
+	public IngestionResult ingest(String source, Iterable<Document> documents) {
+		return ingest(source, documents, batchSize);
+	}
+
+	/**
+	 * Like {@link #ingest(String, Iterable)} with a different number of documents per
+	 * vector store write. The store still splits each write into embedding requests that fit
+	 * the model's token limit.
+	 */
+	public IngestionResult ingest(String source, Iterable<Document> documents, int batchSize) {
+		return ingest(source, documents, batchSize, vectorStore::add);
+	}
+
+	/**
+	 * Like {@link #ingest(String, Iterable, int)}, handing each batch to {@code writer}
+	 * instead of the vector store. The writer must embed and store the batch, throwing when
+	 * that fails.
+	 */
+	public IngestionResult ingest(String source, Iterable<Document> documents, int batchSize,
+			Consumer<List<Document>> writer) {
+		int perBatch = Math.max(1, batchSize);
+		long start = System.nanoTime();
+		AtomicInteger succeeded = new AtomicInteger();
+		ConcurrentLinkedQueue<String> failedIds = new ConcurrentLinkedQueue<>();
+		List<CompletableFuture<Void>> batches = new ArrayList<>();
+		int submitted = 0;
+
+		List<Document> batch = new ArrayList<>(perBatch);
+		for (Document document : documents) {
+			batch.add(document);
+			submitted++;
+			if (batch.size() == perBatch) {
+				batches.add(submit(source, batch, writer, succeeded, failedIds));
+				batch = new ArrayList<>(perBatch);
+			}
+		}
+		if (!batch.isEmpty()) {
+			batches.add(submit(source, batch, writer, succeeded, failedIds));
+		}
+		CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).join();
+
+		IngestionResult result = new IngestionResult(submitted, succeeded.get(), submitted - succeeded.get(),
+				Duration.ofNanos(System.nanoTime() - start), List.copyOf(failedIds));
+		logger.info("📥 Ingested {} of {} documents from {} in {} ms ({} docs/s, {} failed)", result.succeeded(),
+				result.submitted(), source, result.elapsed().toMillis(), Math.round(result.documentsPerSecond()),
+				result.failed());
+		return result;
+	}
+
+	public int getConcurrencyLimit() {
+		lock.lock();
+		try {
+			return concurrencyLimit;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// Blocks the reading thread while the limit is reached, which is what bounds memory
+	private CompletableFuture<Void> submit(String source, List<Document> batch, Consumer<List<Document>> writer,
+			AtomicInteger succeeded, ConcurrentLinkedQueue<String> failedIds) {
+		acquire();
+		try {
+			return CompletableFuture.runAsync(() -> {
+				try {
+					if (embed(source, batch, writer)) {
+						succeeded.addAndGet(batch.size());
+					}
+					else {
+						batch.forEach(document -> failedIds.add(document.getId()));
+					}
+				}
+				finally {
+					release();
+				}
+			}, executor);
+		}
+		catch (RuntimeException e) {
+			release();
+			throw e;
+		}
+	}
+
+	private boolean embed(String source, List<Document> batch, Consumer<List<Document>> writer) {
+		for (int attempt = 0;; attempt++) {
+			long start = System.nanoTime();
+			try {
+				writer.accept(batch);
+				batchTimer(source, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				documents(source, "success").increment(batch.size());
+				onSuccess();
+				return true;
+			}
+			catch (RuntimeException e) {
+				boolean throttled = isThrottled(e);
+				batchTimer(source, throttled ? "throttled" : "error").record(System.nanoTime() - start,
+						TimeUnit.NANOSECONDS);
+				if (!throttled || attempt >= maxRetries) {
+					logger.warn("⚠️  Embedding batch of {} documents from {} failed: {}", batch.size(), source,
+							e.getMessage());
+					documents(source, "error").increment(batch.size());
+					return false;
+				}
+				long backoffMillis = onThrottled(attempt);
+				logger.info("🐢 Embedding service throttled, retrying batch in {} ms with concurrency {}", backoffMillis,
+						getConcurrencyLimit());
+				try {
+					Thread.sleep(backoffMillis);
+				}
+				catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					documents(source, "error").increment(batch.size());
+					return false;
+				}
+			}
+		}
+	}
+
+	private void acquire() {
+		lock.lock();
+		try {
+			while (inFlight >= concurrencyLimit) {
+				permitReleased.awaitUninterruptibly();
+			}
+			inFlight++;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			permitReleased.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// Additive increase: one more concurrent call after a full round of successful batches
+	private void onSuccess() {
+		lock.lock();
+		try {
+			if (concurrencyLimit < maxConcurrency && ++successesSinceIncrease >= concurrencyLimit) {
+				concurrencyLimit++;
+				successesSinceIncrease = 0;
+				permitReleased.signalAll();
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// Multiplicative decrease, then a jittered exponential backoff for the throttled batch
+	private long onThrottled(int attempt) {
+		lock.lock();
+		try {
+			concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+			successesSinceIncrease = 0;
+		}
+		finally {
+			lock.unlock();
+		}
+		long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 20));
+		return ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+	}
+
+	/**
+	 * Whether the failure means the embedding service wants fewer requests: a 429 response
+	 * or a timeout anywhere in the cause chain.
+	 */
+	static boolean isThrottled(Throwable error) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+			if (cause instanceof HttpStatusCodeException statusError && statusError.getStatusCode().value() == 429) {
+				return true;
+			}
+			if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException
+					|| cause instanceof TimeoutException) {
+				return true;
+			}
+			// Spring AI reports HTTP errors as AI exceptions whose message starts with the status
+			String message = cause.getMessage();
+			if (message != null && (message.startsWith("429") || message.contains("Too Many Requests"))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Counter documents(String source, String outcome) {
+		return Counter.builder(DOCUMENTS_COUNTER)
+			.description("Documents embedded into the vector store")
+			.tag("source", source)
+			.tag("outcome", outcome)
+			.register(meterRegistry);
+	}
+
+	private Timer batchTimer(String source, String outcome) {
+		return Timer.builder(BATCH_TIMER)
+			.description("Latency of embedding and storing one batch of documents")
+			.tag("source", source)
+			.tag("outcome", outcome)
+			.publishPercentiles(0.5, 0.95)
+			.register(meterRegistry);
+	}
+
+	public record IngestionResult(int submitted, int succeeded, int failed, Duration elapsed, List<String> failedIds) {
+
+		public double documentsPerSecond() {
+			long millis = elapsed.toMillis();
+			return millis > 0 ? succeeded * 1000.0 / millis : succeeded;
+		}
+
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * {@link ChatMemoryRepository} stored in the application datasource so conversations
+ * survive restarts and are shared between instances. Conversations that have been idle
+ * longer than the timeout are purged as new turns are written. The table is created on
+ * startup with column types that suit the database the app is bound to.
+ */
+public class JdbcChatMemoryRepository implements ChatMemoryRepository, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(JdbcChatMemoryRepository.class);
+
+	private static final String TABLE = "spring_metal_chat_memory";
+
+	private static final long PURGE_INTERVAL_MS = 60_000;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Duration idleTimeout;
+
+	private final AtomicLong lastPurge = new AtomicLong();
+
+	public JdbcChatMemoryRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			Duration idleTimeout) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.idleTimeout = idleTimeout;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData()
+			.getDatabaseProductName());
+		if (!tableExists()) {
+			try {
+				jdbcTemplate.execute(createTableStatement(product));
+			}
+			catch (DataAccessException e) {
+				// Another instance may have created it first
+				if (!tableExists()) {
+					throw e;
+				}
+			}
+		}
+		logger.info("🧠 Conversation memory stored in table {} ({})", TABLE, product);
+	}
+
+	// Not every supported database has CREATE TABLE IF NOT EXISTS, so existence is checked first
+	private boolean tableExists() {
+		return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+			DatabaseMetaData metaData = connection.getMetaData();
+			for (String name : List.of(TABLE, TABLE.toUpperCase(Locale.ROOT))) {
+				try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, name,
+						new String[] { "TABLE" })) {
+					if (tables.next()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}));
+	}
+
+	static String createTableStatement(String databaseProduct) {
+		String product = databaseProduct != null ? databaseProduct.toLowerCase(Locale.ROOT) : "";
+		String textType;
+		String timestampType = "TIMESTAMP";
+		if (product.contains("microsoft sql server")) {
+			textType = "NVARCHAR(MAX)";
+			timestampType = "DATETIME2";
+		}
+		else if (product.contains("oracle")) {
+			textType = "CLOB";
+		}
+		else if (product.contains("mysql") || product.contains("mariadb")) {
+			textType = "LONGTEXT";
+			timestampType = "DATETIME(6)";
+		}
+		else if (product.contains("postgresql") || product.contains("h2")) {
+			textType = "TEXT";
+		}
+		else {
+			textType = "CLOB";
+		}
+		return "CREATE TABLE " + TABLE + " ("
+				+ "conversation_id VARCHAR(64) NOT NULL, "
+				+ "message_index INT NOT NULL, "
+				+ "message_type VARCHAR(16) NOT NULL, "
+				+ "content " + textType + " NOT NULL, "
+				+ "updated_at " + timestampType + " NOT NULL, "
+				+ "PRIMARY KEY (conversation_id, message_index))";
+	}
+
+	@Override
+	public List<String> findConversationIds() {
+		return jdbcTemplate.queryForList("SELECT DISTINCT conversation_id FROM " + TABLE, String.class);
+	}
+
+	@Override
+	public List<Message> findByConversationId(String conversationId) {
+		return jdbcTemplate.query(
+				"SELECT message_type, content FROM " + TABLE + " WHERE conversation_id = ? ORDER BY message_index",
+				(rs, rowNum) -> toMessage(rs.getString(1), rs.getString(2)), conversationId);
+	}
+
+	@Override
+	public void saveAll(String conversationId, List<Message> messages) {
+		List<Message> storable = messages.stream().filter(JdbcChatMemoryRepository::isStorable).toList();
+		Timestamp now = Timestamp.from(Instant.now());
+		transactionTemplate.executeWithoutResult(status -> {
+			jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE conversation_id = ?", conversationId);
+			jdbcTemplate.batchUpdate("INSERT INTO " + TABLE
+					+ " (conversation_id, message_index, message_type, content, updated_at) VALUES (?, ?, ?, ?, ?)",
+					new BatchPreparedStatementSetter() {
+
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							Message message = storable.get(i);
+							ps.setString(1, conversationId);
+							ps.setInt(2, i);
+							ps.setString(3, message.getMessageType().name());
+							ps.setString(4, message.getText());
+							ps.setTimestamp(5, now);
+						}
+
+						@Override
+						public int getBatchSize() {
+							return storable.size();
+						}
+					});
+		});
+		purgeIdleConversations();
+	}
+
+	@Override
+	public void deleteByConversationId(String conversationId) {
+		jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE conversation_id = ?", conversationId);
+	}
+
+	// Every turn rewrites the whole conversation, so all of its rows share one timestamp
+	private void purgeIdleConversations() {
+		long now = System.currentTimeMillis();
+		long last = lastPurge.get();
+		if (now - last < PURGE_INTERVAL_MS || !lastPurge.compareAndSet(last, now)) {
+			return;
+		}
+		try {
+			int purged = jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE updated_at < ?",
+					Timestamp.from(Instant.now().minus(idleTimeout)));
+			if (purged > 0) {
+				logger.info("🧠 Purged {} messages from idle conversations", purged);
+			}
+		}
+		catch (Exception e) {
+			logger.warn("🧠 Could not purge idle conversations: {}", e.getMessage());
+		}
+	}
+
+	private static boolean isStorable(Message message) {
+		return message.getText() != null && (message.getMessageType() == MessageType.USER
+				|| message.getMessageType() == MessageType.ASSISTANT || message.getMessageType() == MessageType.SYSTEM);
+	}
+
+	private static Message toMessage(String type, String content) {
+		return switch (MessageType.valueOf(type)) {
+			case USER -> new UserMessage(content);
+			case ASSISTANT -> new AssistantMessage(content);
+			case SYSTEM -> new SystemMessage(content);
+			default -> throw new IllegalStateException("Unsupported message type in conversation memory: " + type);
+		};
+	}
+
+}
@@ -19,9 +19,9 @@ package org.cloudfoundry.samples.music.config.ai;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
 import org.springframework.ai.rag.Query;
 import org.springframework.ai.chat.prompt.PromptTemplate;
@@ -34,9 +34,19 @@ import org.springframework.core.io.Resource;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
+import io.micrometer.core.instrument.Timer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 /**
  *
  * @author Christian Tzolov
@@ -47,17 +57,61 @@ public class MessageRetriever {
 	private Resource systemPrompt;
 	private VectorStore vectorStore;
 	private ChatClient chatClient;
+	private final QueryRewriteCache queryRewriteCache;
+	private final SemanticAnswerCache semanticAnswerCache;
+	private final ChatPipelineMetrics metrics;
+	private final RewriteQueryTransformer queryTransformer;
+	private final PromptAssembler promptAssembler;
+	private final ToolSelector toolSelector;
+	private volatile String systemPromptText;
 
 	@Autowired(required = false)
 	private ToolCallbackProvider toolCallbackProvider;
 
 	private static final Logger logger = LoggerFactory.getLogger(MessageRetriever.class);
 
+	private static final String REWRITE_PROMPT = """
+		Rewrite this query for better {target} search and tool selection.
+
+		RULES:
+		- Preserve the intent and meaning of the question (e.g., "who is in" means band members, "what albums" means discography)
+		- Add context words that help with search (e.g., "band members", "discography", "biography")
+		- Fix obvious spelling errors (e.g., "nirvanas" -> "Nirvana")
+		- Make the query clear and specific for tool calling
+		- Keep the natural question format if it's a question
+		- NO explanations, just the rewritten query
+
+		Examples:
+		"list nirvanas albums" -> "What albums are by Nirvana?"
+		"who is in metallica" -> "Who are the band members of Metallica?"
+		"songs on nevermind" -> "What tracks are on the album Nevermind by Nirvana?"
+
+		Query: {query}
+
+		Rewritten:""";
+
 	private static final Pattern THINK_TAG_PATTERN = Pattern.compile("<think>.*?</think>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
 
-	public MessageRetriever(VectorStore vectorStore, ChatClient chatClient) {
+	public MessageRetriever(VectorStore vectorStore, ChatClient chatClient, QueryRewriteCache queryRewriteCache,
+			SemanticAnswerCache semanticAnswerCache, ChatPipelineMetrics metrics, PromptAssembler promptAssembler,
+			ToolSelector toolSelector) {
 		this.vectorStore = vectorStore;
 		this.chatClient = chatClient;
+		this.queryRewriteCache = queryRewriteCache;
+		this.semanticAnswerCache = semanticAnswerCache;
+		this.metrics = metrics;
+		this.promptAssembler = promptAssembler;
+		this.toolSelector = toolSelector;
+
+		// Enhanced prompt template for better tool calling
+		PromptTemplate customPrompt = PromptTemplate.builder()
+			.template(REWRITE_PROMPT)
+			.build();
+
+		this.queryTransformer = RewriteQueryTransformer.builder()
+			.chatClientBuilder(this.chatClient.mutate())
+			.promptTemplate(customPrompt)
+			.build();
 	}
 
 
@@ -74,117 +128,27 @@ public class MessageRetriever {
 		}
 
 		try {
-			// Step 2: Query Rewriting
-			logger.info("🔥 STEP 2 - QUERY REWRITING");
-
-			// Enhanced prompt template for better tool calling
-			String customPromptText = """
-				Rewrite this query for better {target} search and tool selection.
-
-				RULES:
-				- Preserve the intent and meaning of the question (e.g., "who is in" means band members, "what albums" means discography)
-				- Add context words that help with search (e.g., "band members", "discography", "biography")
-				- Fix obvious spelling errors (e.g., "nirvanas" -> "Nirvana")
-				- Make the query clear and specific for tool calling
-				- Keep the natural question format if it's a question
-				- NO explanations, just the rewritten query
-
-				Examples:
-				"list nirvanas albums" -> "What albums are by Nirvana?"
-				"who is in metallica" -> "Who are the band members of Metallica?"
-				"songs on nevermind" -> "What tracks are on the album Nevermind by Nirvana?"
-
-				Query: {query}
-
-				Rewritten:""";
-
-			PromptTemplate customPrompt = PromptTemplate.builder()
-				.template(customPromptText)
-				.build();
-
-			RewriteQueryTransformer queryTransformer = RewriteQueryTransformer.builder()
-				.chatClientBuilder(this.chatClient.mutate())
-				.promptTemplate(customPrompt)
-				.build();
-
-			Query originalQuery = new Query(message);
-			Query rewrittenQuery = queryTransformer.transform(originalQuery);
-			String rawOptimizedQuery = rewrittenQuery.text().trim();
-
-			// Clean any think tags from the rewritten query
-			String optimizedQuery = cleanThinkTags(rawOptimizedQuery);
-
-			logger.info("🔥 Rewritten: '{}'", optimizedQuery);
-
-			// Step 3: Vector Store Search
-			logger.info("🔥 STEP 3 - VECTOR SEARCH");
-			SearchRequest searchRequest = SearchRequest.builder()
-				.query(optimizedQuery)
-				.similarityThreshold(0.3d)
-				.topK(5)
-				.build();
-
-			List<Document> retrievedDocs = this.vectorStore.similaritySearch(searchRequest);
-			logger.info("🔥 Retrieved {} documents", retrievedDocs.size());
-
-			// Step 4: Setup tools for LLM
-			logger.info("🔥 STEP 4 - TOOL SETUP");
-			ToolCallback[] toolCallbacks = toolCallbackProvider != null ? toolCallbackProvider.getToolCallbacks()
-				: new ToolCallback[0];
-			logger.info("🔧 Available tools: {}", toolCallbacks.length);
-
-			// Create QuestionAnswerAdvisor
-			PromptTemplate customPromptTemplate = PromptTemplate.builder()
-				.resource(systemPrompt)
-				.build();
-
-			QuestionAnswerAdvisor qaAdvisor = QuestionAnswerAdvisor.builder(this.vectorStore)
-				.searchRequest(SearchRequest.builder()
-					.similarityThreshold(0.3d)
-					.topK(5)
-					.build())
-				.promptTemplate(customPromptTemplate)
-				.build();
-
-			// Step 5: Build prompt and let LLM call tools
-			logger.info("🔥 STEP 5 - BUILDING PROMPT WITH TOOLS");
-			var promptSpec = this.chatClient
-				.prompt()
-				.advisors(qaAdvisor);
-
-			// Add conversation history messages first
-			if (!conversationHistory.isEmpty()) {
-				promptSpec = promptSpec.messages(conversationHistory);
+			SemanticAnswerCache.Lookup cacheLookup = lookupCachedAnswer(message, conversationHistory);
+			if (cacheLookup != null && cacheLookup.isHit()) {
+				logger.info("🔥 ===== RAG PIPELINE END (cached answer) =====");
+				return cacheLookup.answer();
 			}
 
-			// Then add the current user message (using optimized query for better tool decisions)
-			promptSpec = promptSpec.user(optimizedQuery);
+			var promptSpec = preparePrompt(message, conversationHistory);
 
 			logger.info("🔥 STEP 6 - EXECUTING CHAT CALL");
 
-			// Debug: Check if tools are actually available in the ChatClient
-			try {
-				logger.info("🔍 ChatClient debug info:");
-				logger.info("🔍 ChatClient class: {}", this.chatClient.getClass().getSimpleName());
-
-				// Check if we can get tool info from the prompt spec
-				var chatRequestBuilder = promptSpec.call();
-				logger.info("🔍 Chat request built successfully");
-
-			} catch (Exception e) {
-				logger.warn("🔍 Could not debug ChatClient: {}", e.getMessage());
-			}
-
-			// Execute the call and capture the full response for debugging
-			var chatResponse = promptSpec.call();
-			String response = chatResponse.content();
+			// Execute the call once; every accessor on the call spec would re-run the request
+			ChatResponse result = metrics.time(ChatPipelineMetrics.STAGE_GENERATION,
+				() -> promptSpec.call().chatResponse());
+			String response = result != null && result.getResult() != null ? result.getResult().getOutput().getText()
+				: null;
 
 			// Debug: Log the raw response to understand what's happening
 			logger.info("🔍 Raw LLM response: '{}'", response != null ? response.substring(0, Math.min(response.length(), 500)) : "null");
 
 			// Debug: Check if there were any tool calls attempted
 			try {
-				var result = chatResponse.chatResponse();
 				if (result != null && result.getResults() != null && !result.getResults().isEmpty()) {
 					var generation = result.getResults().get(0);
 					logger.info("🔍 Generation metadata: {}", generation.getMetadata());
@@ -199,14 +163,21 @@ public class MessageRetriever {
 				logger.warn("🔍 Could not inspect chat response: {}", e.getMessage());
 			}
 
-			String cleanedResponse = cleanThinkTags(response);
+			String cleanedResponse = metrics.time(ChatPipelineMetrics.STAGE_POST_PROCESSING, () -> {
+				String cleaned = cleanThinkTags(response);
+				if (cacheLookup != null) {
+					semanticAnswerCache.put(cacheLookup, cleaned);
+				}
+				return cleaned;
+			});
 			logger.info("🔥 RESPONSE: {} chars", cleanedResponse != null ? cleanedResponse.length() : 0);
 			logger.info("🔥 ===== RAG PIPELINE END =====");
 			return cleanedResponse;
 
-		} catch (Exception e) {
+		} catch (RuntimeException e) {
+			// Callers turn this into their own error reply, so it is never mistaken for an answer
 			logger.error("🔥 ERROR in RAG pipeline", e);
-			return "I'm sorry, I encountered an error while processing your question: " + e.getMessage();
+			throw e;
 		}
 
 		/* // hand rolled implementation
@@ -225,6 +196,167 @@ public class MessageRetriever {
 
 	}
 
+	/**
+	 * Streaming variant of {@link #retrieve(String, List)}. Tokens are emitted as the
+	 * model produces them, with {@code <think>} spans removed on the fly. Query rewriting
+	 * and retrieval still block, so the pipeline is subscribed on a bounded elastic worker.
+	 */
+	public Flux<String> stream(String message, List<Message> conversationHistory) {
+		return Flux.defer(() -> {
+			logger.info("🔥 ===== RAG STREAM START =====");
+			logger.info("🔥 Query: '{}'", message);
+			if (!conversationHistory.isEmpty()) {
+				logger.info("🔥 Context: {} messages", conversationHistory.size());
+			}
+
+			SemanticAnswerCache.Lookup cacheLookup = lookupCachedAnswer(message, conversationHistory);
+			if (cacheLookup != null && cacheLookup.isHit()) {
+				logger.info("🔥 ===== RAG STREAM END (cached answer) =====");
+				return Flux.just(cacheLookup.answer());
+			}
+
+			var promptSpec = preparePrompt(message, conversationHistory);
+
+			logger.info("🔥 STEP 6 - EXECUTING STREAMING CHAT CALL");
+			ThinkTagFilter thinkTagFilter = new ThinkTagFilter();
+			StringBuilder streamedResponse = new StringBuilder();
+			Timer.Sample generationSample = metrics.start();
+			Timer.Sample firstTokenSample = metrics.start();
+			AtomicBoolean firstToken = new AtomicBoolean(true);
+			return promptSpec.stream()
+				.content()
+				.map(thinkTagFilter::accept)
+				.concatWith(Mono.fromSupplier(thinkTagFilter::flush))
+				.filter(chunk -> !chunk.isEmpty())
+				.doOnNext(chunk -> {
+					if (firstToken.compareAndSet(true, false)) {
+						metrics.stop(firstTokenSample, ChatPipelineMetrics.STAGE_FIRST_TOKEN, true);
+					}
+					streamedResponse.append(chunk);
+				})
+				.doOnComplete(() -> {
+					metrics.stop(generationSample, ChatPipelineMetrics.STAGE_GENERATION, true);
+					if (cacheLookup != null) {
+						semanticAnswerCache.put(cacheLookup, streamedResponse.toString());
+					}
+					logger.info("🔥 ===== RAG STREAM END =====");
+				})
+				.doOnError(e -> {
+					metrics.stop(generationSample, ChatPipelineMetrics.STAGE_GENERATION, false);
+					logger.error("🔥 ERROR in RAG stream", e);
+				});
+		}).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	/**
+	 * Consult the semantic answer cache. Follow-up questions depend on the conversation
+	 * so only standalone questions are looked up; {@code null} means the cache is skipped.
+	 */
+	private SemanticAnswerCache.Lookup lookupCachedAnswer(String message, List<Message> conversationHistory) {
+		if (semanticAnswerCache == null || !conversationHistory.isEmpty()) {
+			return null;
+		}
+		logger.info("🔥 STEP 1 - SEMANTIC ANSWER CACHE");
+		return metrics.time(ChatPipelineMetrics.STAGE_ANSWER_CACHE, () -> semanticAnswerCache.lookup(message));
+	}
+
+	private ChatClient.ChatClientRequestSpec preparePrompt(String message, List<Message> conversationHistory) {
+		// Step 2: Query Rewriting
+		logger.info("🔥 STEP 2 - QUERY REWRITING");
+		String optimizedQuery = metrics.time(ChatPipelineMetrics.STAGE_REWRITE,
+			() -> queryRewriteCache.rewrite(message, () -> rewriteQuery(message)));
+
+		logger.info("🔥 Rewritten: '{}'", optimizedQuery);
+
+		// Step 3: Vector Store Search
+		logger.info("🔥 STEP 3 - VECTOR SEARCH");
+		SearchRequest searchRequest = SearchRequest.builder()
+			.query(optimizedQuery)
+			.similarityThreshold(0.3d)
+			.topK(5)
+			.build();
+
+		List<Document> retrievedDocs = metrics.time(ChatPipelineMetrics.STAGE_RETRIEVE,
+			() -> this.vectorStore.similaritySearch(searchRequest));
+		logger.info("🔥 Retrieved {} documents", retrievedDocs.size());
+
+		// Step 4: Setup tools for LLM
+		logger.info("🔥 STEP 4 - TOOL SETUP");
+		ToolCallback[] availableTools = toolCallbackProvider != null ? toolCallbackProvider.getToolCallbacks()
+			: new ToolCallback[0];
+		logger.info("🔧 Available tools: {}", availableTools.length);
+
+		// Only offer the tools closest to the query instead of every schema from every server
+		ToolCallback[] toolCallbacks = toolSelector != null && availableTools.length > 0
+				? metrics.time(ChatPipelineMetrics.STAGE_TOOL_SELECTION,
+						() -> toolSelector.select(optimizedQuery, availableTools))
+				: availableTools;
+
+		Timer.Sample promptBuildSample = metrics.start();
+
+		// Fit history and documents into the token budget next to the system prompt and tool schemas
+		String systemPromptText = systemPromptText();
+		PromptAssembler.Assembly assembly = promptAssembler.assemble(systemPromptText, optimizedQuery,
+				conversationHistory, retrievedDocs, toolCallbacks);
+		PromptAssembler.TokenCounts tokens = assembly.tokens();
+		logger.info("🧮 Prompt tokens: system={}, history={} ({} dropped), documents={} ({} dropped), tools={}, user={}, total={}/{}",
+				tokens.system(), tokens.history(), tokens.droppedMessages(), tokens.documents(),
+				tokens.droppedDocuments(), tokens.tools(), tokens.user(), tokens.total(), tokens.budget());
+		if (tokens.isOverBudget()) {
+			logger.warn("🧮 Prompt exceeds the token budget even without history and documents");
+		}
+		metrics.recordPromptTokens(tokens);
+
+		// Augment the prompt with the documents retrieved above instead of searching again
+		PromptTemplate customPromptTemplate = PromptTemplate.builder()
+			.template(systemPromptText)
+			.build();
+
+		RetrievedDocumentsAdvisor qaAdvisor = new RetrievedDocumentsAdvisor(assembly.documents(), customPromptTemplate);
+
+		// Step 5: Build prompt and let LLM call tools
+		logger.info("🔥 STEP 5 - BUILDING PROMPT WITH TOOLS");
+		var promptSpec = this.chatClient
+			.prompt()
+			.advisors(qaAdvisor);
+
+		// Add conversation history messages first
+		if (!assembly.history().isEmpty()) {
+			promptSpec = promptSpec.messages(assembly.history());
+		}
+
+		// Tools are passed per request; the MCP tool callbacks time their own invocations
+		if (toolCallbacks.length > 0) {
+			promptSpec = promptSpec.toolCallbacks(toolCallbacks);
+		}
+
+		// Then add the current user message (using optimized query for better tool decisions)
+		promptSpec = promptSpec.user(optimizedQuery);
+		metrics.stop(promptBuildSample, ChatPipelineMetrics.STAGE_PROMPT_BUILD, true);
+		return promptSpec;
+	}
+
+	private String systemPromptText() {
+		String text = this.systemPromptText;
+		if (text == null) {
+			try {
+				text = systemPrompt.getContentAsString(StandardCharsets.UTF_8);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException("Could not read system prompt " + systemPrompt, e);
+			}
+			this.systemPromptText = text;
+		}
+		return text;
+	}
+
+	private String rewriteQuery(String message) {
+		Query rewrittenQuery = this.queryTransformer.transform(new Query(message));
+
+		// Clean any think tags from the rewritten query
+		return cleanThinkTags(rewrittenQuery.text().trim());
+	}
+
 	private String cleanThinkTags(String response) {
 		if (response == null) {
 			return null;
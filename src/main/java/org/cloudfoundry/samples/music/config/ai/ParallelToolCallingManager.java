@@ -0,0 +1,214 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * {@link ToolCallingManager} that runs the tool calls of one model turn concurrently.
+ * Results are joined in the order the model requested them, so the conversation looks
+ * exactly as if they had run one after another. At most {@code maxConcurrency} calls of
+ * a turn run at once and each gets {@code timeout}; a call that times out is interrupted
+ * and answers the model with an error text instead of failing the whole turn. Turns with
+ * a single tool call take the same path, so they are bounded by the timeout too.
+ */
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParallelToolCallingManager.class);
+
+	private final ToolCallingManager delegate;
+
+	private final ToolCallbackResolver toolCallbackResolver;
+
+	private final ToolExecutionExceptionProcessor exceptionProcessor;
+
+	private final ExecutorService executor;
+
+	private final int maxConcurrency;
+
+	private final Duration timeout;
+
+	public ParallelToolCallingManager(ToolCallingManager delegate, ToolCallbackResolver toolCallbackResolver,
+			ToolExecutionExceptionProcessor exceptionProcessor, ExecutorService executor, int maxConcurrency,
+			Duration timeout) {
+		this.delegate = delegate;
+		this.toolCallbackResolver = toolCallbackResolver;
+		this.exceptionProcessor = exceptionProcessor;
+		this.executor = executor;
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		this.timeout = timeout;
+	}
+
+	@Override
+	public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+		return delegate.resolveToolDefinitions(chatOptions);
+	}
+
+	@Override
+	public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+		AssistantMessage assistantMessage = chatResponse.getResults()
+			.stream()
+			.map(Generation::getOutput)
+			.filter(AssistantMessage::hasToolCalls)
+			.findFirst()
+			.orElse(null);
+		if (assistantMessage == null) {
+			return delegate.executeToolCalls(prompt, chatResponse);
+		}
+
+		List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+		List<ToolCallback> availableCallbacks = prompt.getOptions() instanceof ToolCallingChatOptions options
+				? options.getToolCallbacks() : List.of();
+		ToolContext toolContext = buildToolContext(prompt, assistantMessage);
+		if (toolCalls.size() > 1) {
+			logger.info("🔀 Running {} tool calls concurrently (max {} at once)", toolCalls.size(), maxConcurrency);
+		}
+
+		Semaphore permits = new Semaphore(maxConcurrency);
+		List<ToolCallback> callbacks = new ArrayList<>();
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for (AssistantMessage.ToolCall toolCall : toolCalls) {
+			ToolCallback callback = resolve(toolCall.name(), availableCallbacks);
+			callbacks.add(callback);
+			String arguments = toolCall.arguments() != null && !toolCall.arguments().isBlank() ? toolCall.arguments()
+					: "{}";
+
+			permits.acquireUninterruptibly();
+			CompletableFuture<String> result = new CompletableFuture<>();
+			Future<?> task;
+			try {
+				// The permit is held until the tool really returns, not just until the timeout
+				task = executor.submit(() -> {
+					try {
+						result.complete(callback.call(arguments, toolContext));
+					}
+					catch (Throwable ex) {
+						result.completeExceptionally(ex);
+					}
+					finally {
+						permits.release();
+					}
+				});
+			}
+			catch (RuntimeException ex) {
+				permits.release();
+				throw ex;
+			}
+			result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((ignored, ex) -> {
+				// Interrupt a call that timed out so a hanging tool gives its permit back
+				if (ex instanceof TimeoutException) {
+					task.cancel(true);
+				}
+			});
+			results.add(result);
+		}
+
+		List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+		Boolean returnDirect = null;
+		for (int i = 0; i < toolCalls.size(); i++) {
+			AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+			ToolCallback callback = callbacks.get(i);
+			responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+					await(toolCall.name(), results.get(i))));
+			boolean toolReturnDirect = callback.getToolMetadata().returnDirect();
+			returnDirect = returnDirect == null ? toolReturnDirect : returnDirect && toolReturnDirect;
+		}
+
+		List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+		conversationHistory.add(assistantMessage);
+		conversationHistory.add(new ToolResponseMessage(responses, Map.of()));
+		return ToolExecutionResult.builder()
+			.conversationHistory(conversationHistory)
+			.returnDirect(Boolean.TRUE.equals(returnDirect))
+			.build();
+	}
+
+	private ToolCallback resolve(String toolName, List<ToolCallback> availableCallbacks) {
+		ToolCallback callback = availableCallbacks.stream()
+			.filter(candidate -> toolName.equals(candidate.getToolDefinition().name()))
+			.findFirst()
+			.orElseGet(() -> toolCallbackResolver.resolve(toolName));
+		if (callback == null) {
+			throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+		}
+		return callback;
+	}
+
+	private String await(String toolName, CompletableFuture<String> result) {
+		try {
+			return result.join();
+		}
+		catch (CompletionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof TimeoutException) {
+				logger.warn("🔀 Tool '{}' timed out after {} ms", toolName, timeout.toMillis());
+				return "Tool '%s' did not respond within %d seconds".formatted(toolName, timeout.toSeconds());
+			}
+			if (cause instanceof ToolExecutionException toolExecutionException) {
+				return exceptionProcessor.process(toolExecutionException);
+			}
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw ex;
+		}
+	}
+
+	// Same context the default manager hands to tools, including the history so far
+	private static ToolContext buildToolContext(Prompt prompt, AssistantMessage assistantMessage) {
+		Map<String, Object> context = Map.of();
+		if (prompt.getOptions() instanceof ToolCallingChatOptions options
+				&& !CollectionUtils.isEmpty(options.getToolContext())) {
+			context = new HashMap<>(options.getToolContext());
+			List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+			history.add(assistantMessage);
+			context.put(ToolContext.TOOL_CALL_HISTORY, history);
+		}
+		return new ToolContext(context);
+	}
+
+}
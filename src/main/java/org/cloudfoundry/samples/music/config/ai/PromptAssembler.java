@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+/**
+ * Fits the parts of a chat prompt into a token budget before it is sent to the model.
+ * The system prompt, the user query and the tool schemas are always kept; when the
+ * total is over budget the oldest conversation history goes first, then the retrieved
+ * documents with the lowest similarity score.
+ */
+public class PromptAssembler {
+
+	// Role markers and separators the chat template adds around every message
+	private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+	private final TokenCountEstimator tokenCountEstimator;
+
+	private final int maxTokens;
+
+	public PromptAssembler(TokenCountEstimator tokenCountEstimator, int maxTokens) {
+		if (maxTokens <= 0) {
+			throw new IllegalArgumentException("Prompt token budget must be positive");
+		}
+		this.tokenCountEstimator = tokenCountEstimator;
+		this.maxTokens = maxTokens;
+	}
+
+	public int getMaxTokens() {
+		return maxTokens;
+	}
+
+	public Assembly assemble(String systemPrompt, String userQuery, List<Message> history, List<Document> documents,
+			ToolCallback[] toolCallbacks) {
+		int systemTokens = estimate(systemPrompt) + MESSAGE_OVERHEAD_TOKENS;
+		int userTokens = estimate(userQuery) + MESSAGE_OVERHEAD_TOKENS;
+		int toolTokens = 0;
+		for (ToolCallback toolCallback : toolCallbacks) {
+			toolTokens += estimate(toolCallback.getToolDefinition());
+		}
+
+		List<Message> keptHistory = new ArrayList<>(history);
+		int historyTokens = 0;
+		for (Message message : keptHistory) {
+			historyTokens += estimate(message);
+		}
+
+		List<Document> keptDocuments = new ArrayList<>(documents);
+		int documentTokens = 0;
+		for (Document document : keptDocuments) {
+			documentTokens += estimate(document.getText());
+		}
+
+		int fixedTokens = systemTokens + userTokens + toolTokens;
+
+		// Oldest history first; after trimming, never open the conversation on an assistant turn
+		while (!keptHistory.isEmpty() && fixedTokens + historyTokens + documentTokens > maxTokens) {
+			historyTokens -= estimate(keptHistory.remove(0));
+		}
+		if (keptHistory.size() < history.size()) {
+			while (!keptHistory.isEmpty() && keptHistory.get(0).getMessageType() != MessageType.USER) {
+				historyTokens -= estimate(keptHistory.remove(0));
+			}
+		}
+
+		// Then the weakest matches; the survivors keep their retrieval order
+		List<Document> byScore = new ArrayList<>(keptDocuments);
+		byScore.sort(Comparator.comparingDouble(PromptAssembler::score));
+		for (Document weakest : byScore) {
+			if (fixedTokens + historyTokens + documentTokens <= maxTokens) {
+				break;
+			}
+			keptDocuments.remove(weakest);
+			documentTokens -= estimate(weakest.getText());
+		}
+
+		TokenCounts tokens = new TokenCounts(systemTokens, historyTokens, documentTokens, toolTokens, userTokens,
+				fixedTokens + historyTokens + documentTokens, maxTokens, history.size() - keptHistory.size(),
+				documents.size() - keptDocuments.size());
+		return new Assembly(List.copyOf(keptHistory), List.copyOf(keptDocuments), tokens);
+	}
+
+	private int estimate(String text) {
+		return text == null || text.isEmpty() ? 0 : tokenCountEstimator.estimate(text);
+	}
+
+	private int estimate(Message message) {
+		return estimate(message.getText()) + MESSAGE_OVERHEAD_TOKENS;
+	}
+
+	private int estimate(ToolDefinition toolDefinition) {
+		if (toolDefinition == null) {
+			return 0;
+		}
+		return estimate(toolDefinition.name()) + estimate(toolDefinition.description())
+				+ estimate(toolDefinition.inputSchema());
+	}
+
+	private static double score(Document document) {
+		return document.getScore() != null ? document.getScore() : 0d;
+	}
+
+	/**
+	 * The history and documents that fit the budget, with the resulting token counts.
+	 */
+	public record Assembly(List<Message> history, List<Document> documents, TokenCounts tokens) {
+	}
+
+	public record TokenCounts(int system, int history, int documents, int tools, int user, int total, int budget,
+			int droppedMessages, int droppedDocuments) {
+
+		public boolean isOverBudget() {
+			return total > budget;
+		}
+
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.cloudfoundry.samples.music.service.support.ExpiringLruCache;
+
+/**
+ * Caches the output of the query rewrite step so repeated questions skip the extra LLM
+ * round trip. Entries are keyed on the normalized user query alone: the rewrite prompt only
+ * sees the query, so the same question rewrites the same way in any conversation.
+ *
+ * Hit and miss counts are published as {@code cache.gets{cache=query-rewrite}}.
+ */
+public class QueryRewriteCache {
+
+	static final String CACHE_NAME = "query-rewrite";
+
+	private final ExpiringLruCache<String, String> cache;
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	public QueryRewriteCache(int maxSize, Duration ttl, MeterRegistry meterRegistry) {
+		this.cache = new ExpiringLruCache<>(maxSize, ttl);
+		this.hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+			.description("Query rewrite cache lookups").register(meterRegistry);
+		this.misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+			.description("Query rewrite cache lookups").register(meterRegistry);
+		Gauge.builder("cache.size", cache, ExpiringLruCache::size).tag("cache", CACHE_NAME)
+			.register(meterRegistry);
+		Gauge.builder("cache.evictions", cache, ExpiringLruCache::evictionCount).tag("cache", CACHE_NAME)
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Return the cached rewrite for this query, invoking the rewriter on a miss.
+	 * The rewriter runs outside any lock, so concurrent misses for the same key may both
+	 * call the model; the last result wins.
+	 */
+	public String rewrite(String query, Supplier<String> rewriter) {
+		String key = normalize(query);
+		String cached = cache.get(key);
+		if (cached != null) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+		String rewritten = rewriter.get();
+		if (rewritten != null && !rewritten.isBlank()) {
+			cache.put(key, rewritten);
+		}
+		return rewritten;
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+
+	static String normalize(String query) {
+		if (query == null) {
+			return "";
+		}
+		return query.trim()
+			.replaceAll("\\s+", " ")
+			.replaceAll("[?!.]+$", "")
+			.toLowerCase(Locale.ROOT);
+	}
+
+}
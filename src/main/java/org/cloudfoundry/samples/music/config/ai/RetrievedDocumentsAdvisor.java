@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.AdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.BaseAdvisor;
+import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.document.Document;
+
+/**
+ * Augments the user message with documents that were already retrieved earlier in the
+ * pipeline. It renders the prompt exactly like {@link QuestionAnswerAdvisor}, but without
+ * embedding the query and searching the vector store a second time.
+ */
+public class RetrievedDocumentsAdvisor implements BaseAdvisor {
+
+	private final List<Document> documents;
+
+	private final PromptTemplate promptTemplate;
+
+	public RetrievedDocumentsAdvisor(List<Document> documents, PromptTemplate promptTemplate) {
+		this.documents = List.copyOf(documents);
+		this.promptTemplate = promptTemplate;
+	}
+
+	@Override
+	public ChatClientRequest before(ChatClientRequest chatClientRequest, AdvisorChain advisorChain) {
+		Map<String, Object> context = new HashMap<>(chatClientRequest.context());
+		context.put(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, documents);
+
+		String documentContext = documents.stream()
+			.map(Document::getText)
+			.collect(Collectors.joining(System.lineSeparator()));
+
+		String userText = chatClientRequest.prompt().getUserMessage().getText();
+		String augmentedUserText = promptTemplate
+			.render(Map.of("query", userText, "question_answer_context", documentContext));
+
+		return chatClientRequest.mutate()
+			.prompt(chatClientRequest.prompt().augmentUserMessage(augmentedUserText))
+			.context(context)
+			.build();
+	}
+
+	@Override
+	public ChatClientResponse after(ChatClientResponse chatClientResponse, AdvisorChain advisorChain) {
+		return chatClientResponse;
+	}
+
+	@Override
+	public int getOrder() {
+		return 0;
+	}
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.cloudfoundry.samples.music.domain.AlbumChangedEvent;
+import org.cloudfoundry.samples.music.service.McpToolsChangedEvent;
+import org.cloudfoundry.samples.music.service.support.ExpiringLruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Answer cache in front of the RAG pipeline. Incoming questions are embedded and compared
+ * with the embeddings of previously answered questions; when the cosine similarity clears
+ * the configured threshold the earlier answer is returned without calling the rewrite,
+ * retrieval, tools or chat model.
+ *
+ * The cache is cleared whenever the album catalog or the set of MCP tools changes, since
+ * either can change what the correct answer is. Album vectors are synced after the album
+ * write, so the cache is cleared once more when they land: answers computed in between used
+ * the old vectors.
+ */
+public class SemanticAnswerCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+	static final String CACHE_NAME = "semantic-answer";
+
+	private final EmbeddingModel embeddingModel;
+
+	private final double similarityThreshold;
+
+	private final ExpiringLruCache<String, Entry> cache;
+
+	// Bumped on every invalidation so answers computed against stale data are not stored
+	private final AtomicLong generation = new AtomicLong();
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	public SemanticAnswerCache(EmbeddingModel embeddingModel, int maxSize, Duration ttl, double similarityThreshold,
+			MeterRegistry meterRegistry) {
+		this.embeddingModel = embeddingModel;
+		this.similarityThreshold = similarityThreshold;
+		this.cache = new ExpiringLruCache<>(maxSize, ttl);
+		this.hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+			.description("Semantic answer cache lookups").register(meterRegistry);
+		this.misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+			.description("Semantic answer cache lookups").register(meterRegistry);
+		Gauge.builder("cache.size", cache, ExpiringLruCache::size).tag("cache", CACHE_NAME)
+			.register(meterRegistry);
+		Gauge.builder("cache.evictions", cache, ExpiringLruCache::evictionCount).tag("cache", CACHE_NAME)
+			.register(meterRegistry);
+		Gauge.builder("cache.hit.ratio", this, SemanticAnswerCache::hitRatio).tag("cache", CACHE_NAME)
+			.description("Fraction of chat questions answered from the semantic cache")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Embed the question and look for a sufficiently similar answered question. The
+	 * returned lookup carries the embedding so a miss can later be stored without
+	 * embedding the question again.
+	 */
+	public Lookup lookup(String query) {
+		long currentGeneration = generation.get();
+		float[] embedding;
+		try {
+			embedding = embeddingModel.embed(query);
+		}
+		catch (Exception e) {
+			logger.warn("🧠 Semantic cache unavailable, could not embed query: {}", e.getMessage());
+			misses.increment();
+			return new Lookup(query, null, null, currentGeneration);
+		}
+
+		String bestKey = null;
+		double bestScore = similarityThreshold;
+		for (Map.Entry<String, Entry> candidate : cache.snapshot().entrySet()) {
+			double score = cosineSimilarity(embedding, candidate.getValue().embedding());
+			if (score >= bestScore) {
+				bestScore = score;
+				bestKey = candidate.getKey();
+			}
+		}
+
+		// Touch the entry so it counts as recently used; it may have expired in between
+		Entry match = bestKey != null ? cache.get(bestKey) : null;
+		if (match != null) {
+			hits.increment();
+			logger.info("🧠 Semantic cache hit ({}) for '{}' via '{}'", String.format("%.3f", bestScore), query,
+					match.query());
+			return new Lookup(query, embedding, match.answer(), currentGeneration);
+		}
+		misses.increment();
+		return new Lookup(query, embedding, null, currentGeneration);
+	}
+
+	public void put(Lookup lookup, String answer) {
+		if (lookup.embedding() == null || answer == null || answer.isBlank()) {
+			return;
+		}
+		if (lookup.generation() != generation.get()) {
+			logger.debug("🧠 Not caching answer for '{}', cache was invalidated meanwhile", lookup.query());
+			return;
+		}
+		cache.put(QueryRewriteCache.normalize(lookup.query()), new Entry(lookup.query(), lookup.embedding(), answer));
+	}
+
+	public void invalidateAll(String reason) {
+		generation.incrementAndGet();
+		int size = cache.size();
+		cache.clear();
+		if (size > 0) {
+			logger.info("🧠 Semantic cache cleared {} answers: {}", size, reason);
+		}
+	}
+
+	@EventListener
+	public void onAlbumChanged(AlbumChangedEvent event) {
+		invalidateAll("album " + event.albumId() + " changed");
+	}
+
+	@EventListener
+	public void onVectorsChanged(VectorsChangedEvent event) {
+		invalidateAll("vectors written by " + event.source());
+	}
+
+	@EventListener
+	public void onMcpToolsChanged(McpToolsChangedEvent event) {
+		invalidateAll(event.connectionId() != null ? "MCP tools changed for connection " + event.connectionId()
+				: "MCP server reported a tool list change");
+	}
+
+	private double hitRatio() {
+		double total = hits.count() + misses.count();
+		return total == 0 ? 0 : hits.count() / total;
+	}
+
+	static double cosineSimilarity(float[] a, float[] b) {
+		if (a.length != b.length) {
+			return 0;
+		}
+		double dot = 0;
+		double normA = 0;
+		double normB = 0;
+		for (int i = 0; i < a.length; i++) {
+			dot += a[i] * b[i];
+			normA += a[i] * a[i];
+			normB += b[i] * b[i];
+		}
+		if (normA == 0 || normB == 0) {
+			return 0;
+		}
+		return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+	}
+
+	public record Lookup(String query, float[] embedding, String answer, long generation) {
+
+		public boolean isHit() {
+			return answer != null;
+		}
+	}
+
+	private record Entry(String query, float[] embedding, String answer) {
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+/**
+ * Incrementally strips {@code <think>...</think>} spans from a stream of text chunks.
+ *
+ * Tags can be split across chunk boundaries, so any trailing text that could still
+ * turn into a tag is held back until the next chunk (or {@link #flush()}) arrives.
+ * Instances are stateful and must only be used for a single response stream.
+ */
+public class ThinkTagFilter {
+
+	private static final String OPEN_TAG = "<think>";
+
+	private static final String CLOSE_TAG = "</think>";
+
+	private final StringBuilder pending = new StringBuilder();
+
+	private boolean insideThink;
+
+	private boolean emittedText;
+
+	/**
+	 * Accept the next chunk and return the text that is safe to emit, which may be empty.
+	 */
+	public String accept(String chunk) {
+		if (chunk == null || chunk.isEmpty()) {
+			return "";
+		}
+		pending.append(chunk);
+
+		StringBuilder visible = new StringBuilder();
+		while (true) {
+			String tag = insideThink ? CLOSE_TAG : OPEN_TAG;
+			int tagIndex = indexOfIgnoreCase(pending, tag);
+			if (tagIndex >= 0) {
+				if (!insideThink) {
+					visible.append(pending, 0, tagIndex);
+				}
+				pending.delete(0, tagIndex + tag.length());
+				insideThink = !insideThink;
+				continue;
+			}
+
+			// No complete tag yet - keep back a suffix that may be the start of one
+			int emitEnd = pending.length() - partialTagLength(pending, tag);
+			if (!insideThink) {
+				visible.append(pending, 0, emitEnd);
+			}
+			pending.delete(0, emitEnd);
+			break;
+		}
+		return trimLeading(visible);
+	}
+
+	/**
+	 * Release whatever is still buffered once the stream has completed. An unterminated
+	 * think block is dropped.
+	 */
+	public String flush() {
+		StringBuilder rest = new StringBuilder();
+		if (!insideThink) {
+			rest.append(pending);
+		}
+		pending.setLength(0);
+		insideThink = false;
+		return trimLeading(rest);
+	}
+
+	// The blocking path trims the cleaned response; mirror that for the leading edge
+	// so the gap a think block leaves behind is not streamed to the client.
+	private String trimLeading(StringBuilder text) {
+		if (emittedText) {
+			return text.toString();
+		}
+		int start = 0;
+		while (start < text.length() && Character.isWhitespace(text.charAt(start))) {
+			start++;
+		}
+		if (start == text.length()) {
+			return "";
+		}
+		emittedText = true;
+		return text.substring(start);
+	}
+
+	private static int indexOfIgnoreCase(CharSequence text, String tag) {
+		String source = text.toString();
+		for (int i = 0; i <= source.length() - tag.length(); i++) {
+			if (source.regionMatches(true, i, tag, 0, tag.length())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int partialTagLength(CharSequence text, String tag) {
+		String source = text.toString();
+		int max = Math.min(tag.length() - 1, source.length());
+		for (int length = max; length > 0; length--) {
+			if (source.regionMatches(true, source.length() - length, tag, 0, length)) {
+				return length;
+			}
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+/**
+ * {@link ChatMemory} that keeps each conversation under a token budget. When a new
+ * turn pushes a conversation over the cap the oldest messages are dropped first; the
+ * most recent message is always kept. Storage, including the eviction of idle
+ * conversations, is left to the {@link ChatMemoryRepository}. Adding to a conversation reads
+ * and rewrites it, so writes to the same conversation are serialized; two turns running at
+ * once, say from two browser tabs, would otherwise lose one turn's messages.
+ */
+public class TokenWindowChatMemory implements ChatMemory {
+
+	private static final Logger logger = LoggerFactory.getLogger(TokenWindowChatMemory.class);
+
+	private final ChatMemoryRepository repository;
+
+	private final TokenCountEstimator tokenCountEstimator;
+
+	private final int maxTokens;
+
+	// Striped so the lock count stays fixed however many conversations come and go
+	private final ReentrantLock[] conversationLocks = new ReentrantLock[64];
+
+	public TokenWindowChatMemory(ChatMemoryRepository repository, TokenCountEstimator tokenCountEstimator,
+			int maxTokens) {
+		if (maxTokens <= 0) {
+			throw new IllegalArgumentException("Conversation token cap must be positive");
+		}
+		this.repository = repository;
+		this.tokenCountEstimator = tokenCountEstimator;
+		this.maxTokens = maxTokens;
+		for (int i = 0; i < conversationLocks.length; i++) {
+			conversationLocks[i] = new ReentrantLock();
+		}
+	}
+
+	@Override
+	public void add(String conversationId, List<Message> messages) {
+		if (messages == null || messages.isEmpty()) {
+			return;
+		}
+		ReentrantLock lock = lockFor(conversationId);
+		lock.lock();
+		try {
+			append(conversationId, messages);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void append(String conversationId, List<Message> messages) {
+		List<Message> conversation = new ArrayList<>(repository.findByConversationId(conversationId));
+		conversation.addAll(messages);
+
+		int[] tokens = new int[conversation.size()];
+		int total = 0;
+		for (int i = 0; i < conversation.size(); i++) {
+			tokens[i] = estimate(conversation.get(i));
+			total += tokens[i];
+		}
+
+		int first = 0;
+		while (total > maxTokens && first < conversation.size() - 1) {
+			total -= tokens[first++];
+		}
+		if (first > 0) {
+			logger.debug("🧠 Trimmed {} old messages from conversation {} ({} tokens kept)", first,
+					conversationId, total);
+		}
+		repository.saveAll(conversationId, conversation.subList(first, conversation.size()));
+	}
+
+	@Override
+	public List<Message> get(String conversationId) {
+		return repository.findByConversationId(conversationId);
+	}
+
+	@Override
+	public void clear(String conversationId) {
+		ReentrantLock lock = lockFor(conversationId);
+		lock.lock();
+		try {
+			repository.deleteByConversationId(conversationId);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private ReentrantLock lockFor(String conversationId) {
+		return conversationLocks[Math.floorMod(conversationId.hashCode(), conversationLocks.length)];
+	}
+
+	private int estimate(Message message) {
+		String text = message.getText();
+		return text == null || text.isEmpty() ? 0 : tokenCountEstimator.estimate(text);
+	}
+
+}
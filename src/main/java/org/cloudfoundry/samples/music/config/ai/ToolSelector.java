@@ -0,0 +1,163 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+/**
+ * Narrows the tools offered to the model down to the ones most relevant to the query.
+ * Each tool's name and description is embedded once, the first time the tool is seen;
+ * per request only the query is embedded and the {@code topK} most similar tools are
+ * kept, together with any tool on the always-include list.
+ */
+public class ToolSelector {
+
+	private static final Logger logger = LoggerFactory.getLogger(ToolSelector.class);
+
+	private final EmbeddingModel embeddingModel;
+
+	private final int topK;
+
+	private final Set<String> alwaysInclude;
+
+	// Keyed by the embedded text so a changed description is embedded again
+	private final Map<String, float[]> toolEmbeddings = new ConcurrentHashMap<>();
+
+	public ToolSelector(EmbeddingModel embeddingModel, int topK, Set<String> alwaysInclude) {
+		if (topK <= 0) {
+			throw new IllegalArgumentException("Tool selection topK must be positive");
+		}
+		this.embeddingModel = embeddingModel;
+		this.topK = topK;
+		this.alwaysInclude = Set.copyOf(alwaysInclude);
+	}
+
+	/**
+	 * Return the tools to offer for the given query, in their original order. When there
+	 * are no more tools than {@code topK}, or embedding fails, all tools are returned.
+	 */
+	public ToolCallback[] select(String query, ToolCallback[] toolCallbacks) {
+		if (toolCallbacks.length <= topK) {
+			return toolCallbacks;
+		}
+		try {
+			Map<ToolCallback, String> texts = new LinkedHashMap<>();
+			for (ToolCallback toolCallback : toolCallbacks) {
+				texts.put(toolCallback, embeddingText(toolCallback.getToolDefinition()));
+			}
+			Map<String, float[]> embeddings = embeddingsFor(texts.values());
+
+			float[] queryEmbedding = embeddingModel.embed(query);
+			List<ToolCallback> ranked = new ArrayList<>(texts.keySet());
+			Map<ToolCallback, Double> scores = new LinkedHashMap<>();
+			for (ToolCallback toolCallback : ranked) {
+				scores.put(toolCallback,
+						SemanticAnswerCache.cosineSimilarity(queryEmbedding, embeddings.get(texts.get(toolCallback))));
+			}
+			ranked.sort(Comparator.comparingDouble(scores::get).reversed());
+
+			Set<ToolCallback> selected = new HashSet<>(ranked.subList(0, topK));
+			for (ToolCallback toolCallback : toolCallbacks) {
+				if (isAlwaysIncluded(toolCallback.getToolDefinition().name())) {
+					selected.add(toolCallback);
+				}
+			}
+
+			ToolCallback[] result = Arrays.stream(toolCallbacks).filter(selected::contains).toArray(ToolCallback[]::new);
+			logger.info("🎯 Selected {} of {} tools: {}", result.length, toolCallbacks.length,
+					Arrays.stream(result).map(tool -> tool.getToolDefinition().name()).toList());
+			return result;
+		}
+		catch (Exception e) {
+			logger.warn("🎯 Tool selection unavailable, offering all {} tools: {}", toolCallbacks.length,
+					e.getMessage());
+			return toolCallbacks;
+		}
+	}
+
+	/**
+	 * Embed any tools that have not been seen yet, so the first request after a server
+	 * connects does not pay for it, and forget tools that are no longer offered. Called with
+	 * every tool on offer; requests only ever see a subset, so they never prune.
+	 */
+	public void warmUp(ToolCallback[] toolCallbacks) {
+		List<String> texts = Arrays.stream(toolCallbacks).map(tool -> embeddingText(tool.getToolDefinition())).toList();
+		try {
+			if (toolCallbacks.length > topK) {
+				embeddingsFor(texts);
+			}
+		}
+		catch (Exception e) {
+			logger.warn("🎯 Could not embed tool descriptions: {}", e.getMessage());
+		}
+		finally {
+			toolEmbeddings.keySet().retainAll(new HashSet<>(texts));
+		}
+	}
+
+	private Map<String, float[]> embeddingsFor(Collection<String> texts) {
+		Map<String, float[]> embeddings = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+		for (String text : new LinkedHashSet<>(texts)) {
+			float[] embedding = toolEmbeddings.get(text);
+			if (embedding != null) {
+				embeddings.put(text, embedding);
+			}
+			else {
+				missing.add(text);
+			}
+		}
+		if (!missing.isEmpty()) {
+			List<float[]> computed = embeddingModel.embed(missing);
+			for (int i = 0; i < missing.size(); i++) {
+				embeddings.put(missing.get(i), computed.get(i));
+			}
+			toolEmbeddings.putAll(embeddings);
+			logger.info("🎯 Embedded {} new tool descriptions", missing.size());
+		}
+		return embeddings;
+	}
+
+	private boolean isAlwaysIncluded(String toolName) {
+		// MCP tool names carry a client prefix, so match the plain tool name as a suffix too
+		return alwaysInclude.stream().anyMatch(name -> toolName.equals(name) || toolName.endsWith("_" + name));
+	}
+
+	private static String embeddingText(ToolDefinition toolDefinition) {
+		String description = toolDefinition.description();
+		return description != null && !description.isBlank() ? toolDefinition.name() + ": " + description
+				: toolDefinition.name();
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Lists the documents held by the pgvector table together with their
+ * {@link AlbumVectorDocuments#CONTENT_HASH content hash}, read straight from the table so no
+ * embedding call is needed. Unavailable when the vector store is not JDBC backed.
+ */
+public class VectorDocumentIndex {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final String qualifiedTableName;
+
+	public VectorDocumentIndex(JdbcTemplate jdbcTemplate, String schemaName, String tableName) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.qualifiedTableName = schemaName + "." + tableName;
+	}
+
+	public boolean isAvailable() {
+		return jdbcTemplate != null;
+	}
+
+	/**
+	 * Content hash per stored document id; documents stored without a hash map to null.
+	 */
+	public Map<String, String> contentHashes() {
+		Map<String, String> hashes = new HashMap<>();
+		jdbcTemplate.query("SELECT id::text, metadata->>'" + AlbumVectorDocuments.CONTENT_HASH + "' FROM "
+				+ qualifiedTableName, rs -> {
+					hashes.put(rs.getString(1), rs.getString(2));
+				});
+		return hashes;
+	}
+
+	/**
+	 * Content hash of each of the given documents that is stored.
+	 */
+	public Map<String, String> contentHashes(Collection<String> ids) {
+		Map<String, String> hashes = new HashMap<>();
+		if (ids.isEmpty()) {
+			return hashes;
+		}
+		new NamedParameterJdbcTemplate(jdbcTemplate).query("SELECT id::text, metadata->>'"
+				+ AlbumVectorDocuments.CONTENT_HASH + "' FROM " + qualifiedTableName + " WHERE id::text IN (:ids)",
+				Map.of("ids", ids), rs -> {
+					hashes.put(rs.getString(1), rs.getString(2));
+				});
+		return hashes;
+	}
+
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cloudfoundry.samples.music.config.ai;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cloudfoundry.samples.music.config.ai.EmbeddingIngestionPipeline.IngestionResult;
+import org.cloudfoundry.samples.music.domain.Album;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Rebuilds the vector store from the album repository, for instance after the embedding
+ * model or its dimensions changed. Albums are embedded into a shadow table next to the
+ * pgvector table while chat keeps searching the live one, and once every album is in, the
+ * shadow table replaces the live one through renames in a single transaction.
+ *
+ * <p>
+ * The shadow table doubles as the checkpoint: a resumed job skips albums whose current
+ * content hash is already in it. The job state is saved to a small table after every batch,
+ * so a job interrupted by a restart resumes on its own.
+ */
+public class VectorReindexJob {
+
+	private static final Logger logger = LoggerFactory.getLogger(VectorReindexJob.class);
+
+	private static final String DEFAULT_TABLE_NAME = "vector_store";
+
+	private static final String DEFAULT_INDEX_NAME = "spring_ai_vector_index";
+
+	private static final int MAX_ERRORS = 20;
+
+	public enum Status {
+
+		IDLE, RUNNING, SWAPPING, COMPLETED, FAILED
+
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final EmbeddingModel embeddingModel;
+
+	private final BatchingStrategy batchingStrategy;
+
+	private final EmbeddingIngestionPipeline ingestionPipeline;
+
+	private final CrudRepository<Album, String> albumRepository;
+
+	private final VectorStoreInitializer vectorStoreInitializer;
+
+	private final ObjectMapper objectMapper;
+
+	private final String schemaName;
+
+	private final String tableName;
+
+	private final String shadowTableName;
+
+	private final String jobTableName;
+
+	private final String indexMethod;
+
+	private final String operatorClass;
+
+	private final int batchSize;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "vector-reindex");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private final AtomicInteger processed = new AtomicInteger();
+
+	private final AtomicInteger failed = new AtomicInteger();
+
+	private final ConcurrentLinkedDeque<String> errors = new ConcurrentLinkedDeque<>();
+
+	private volatile Status status = Status.IDLE;
+
+	private volatile int total;
+
+	private volatile int dimensions;
+
+	private volatile Instant startedAt;
+
+	private volatile Instant finishedAt;
+
+	private volatile long runStartNanos;
+
+	private volatile int processedAtRunStart;
+
+	public VectorReindexJob(JdbcTemplate jdbcTemplate, EmbeddingModel embeddingModel,
+			BatchingStrategy batchingStrategy, EmbeddingIngestionPipeline ingestionPipeline, CrudRepository<Album, String> albumRepository,
+			VectorStoreInitializer vectorStoreInitializer, ObjectMapper objectMapper, String schemaName,
+			String tableName, String indexType, String distanceType, int batchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = jdbcTemplate != null
+				? new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())) : null;
+		this.embeddingModel = embeddingModel;
+		this.batchingStrategy = batchingStrategy;
+		this.ingestionPipeline = ingestionPipeline;
+		this.albumRepository = albumRepository;
+		this.vectorStoreInitializer = vectorStoreInitializer;
+		this.objectMapper = objectMapper;
+		this.schemaName = schemaName;
+		this.tableName = tableName;
+		this.shadowTableName = tableName + "_reindex";
+		this.jobTableName = tableName + "_reindex_job";
+		this.indexMethod = switch (indexType.toUpperCase()) {
+			case "IVFFLAT" -> "ivfflat";
+			case "NONE" -> null;
+			default -> "hnsw";
+		};
+		this.operatorClass = switch (distanceType.toUpperCase()) {
+			case "EUCLIDEAN_DISTANCE" -> "vector_l2_ops";
+			case "NEGATIVE_INNER_PRODUCT" -> "vector_ip_ops";
+			default -> "vector_cosine_ops";
+		};
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public boolean isAvailable() {
+		return jdbcTemplate != null;
+	}
+
+	/**
+	 * Start a rebuild in the background, or pick up the shadow table of an earlier run that
+	 * failed when {@code resume} is set. Returns the current progress; a job that is already
+	 * running is left alone.
+	 */
+	public Progress start(boolean resume) {
+		if (!isAvailable()) {
+			throw new IllegalStateException("Re-indexing needs the pgvector store");
+		}
+		if (running.compareAndSet(false, true)) {
+			status = Status.RUNNING;
+			executor.execute(() -> run(resume, Status.RUNNING));
+		}
+		return progress();
+	}
+
+	public Progress progress() {
+		int done = processed.get();
+		Double documentsPerSecond = null;
+		Long etaSeconds = null;
+		if (running.get() && runStartNanos > 0) {
+			double seconds = (System.nanoTime() - runStartNanos) / 1_000_000_000.0;
+			double rate = seconds > 0 ? (done - processedAtRunStart) / seconds : 0;
+			documentsPerSecond = Math.round(rate * 10) / 10.0;
+			if (rate > 0) {
+				etaSeconds = Math.round(Math.max(0, total - done - failed.get()) / rate);
+			}
+		}
+		return new Progress(status, dimensions, total, done, failed.get(), documentsPerSecond, etaSeconds, startedAt,
+				finishedAt, List.copyOf(errors));
+	}
+
+	// Picks up a job that was interrupted by a restart
+	@EventListener(ApplicationReadyEvent.class)
+	public void resumeInterrupted() {
+		if (!isAvailable()) {
+			return;
+		}
+		try {
+			ensureJobTable();
+			List<Status> saved = jdbcTemplate.query("SELECT status, dimensions, total, processed, failed, started_at, "
+					+ "finished_at, last_error FROM " + qualified(jobTableName) + " WHERE id = 1", (rs, rowNum) -> {
+						dimensions = rs.getInt("dimensions");
+						total = rs.getInt("total");
+						processed.set(rs.getInt("processed"));
+						failed.set(rs.getInt("failed"));
+						Timestamp started = rs.getTimestamp("started_at");
+						Timestamp finished = rs.getTimestamp("finished_at");
+						startedAt = started != null ? started.toInstant() : null;
+						finishedAt = finished != null ? finished.toInstant() : null;
+						if (rs.getString("last_error") != null) {
+							errors.add(rs.getString("last_error"));
+						}
+						return Status.valueOf(rs.getString("status"));
+					});
+			if (saved.isEmpty()) {
+				return;
+			}
+			Status savedStatus = saved.get(0);
+			status = savedStatus;
+			if ((savedStatus == Status.RUNNING || savedStatus == Status.SWAPPING)
+					&& running.compareAndSet(false, true)) {
+				logger.info("🔁 Resuming vector re-index interrupted at {} of {} documents", processed.get(), total);
+				executor.execute(() -> run(true, savedStatus));
+			}
+		}
+		catch (Exception e) {
+			logger.warn("⚠️  Could not read the vector re-index checkpoint: {}", e.getMessage());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void run(boolean resume, Status savedStatus) {
+		try {
+			ensureJobTable();
+			status = Status.RUNNING;
+			finishedAt = null;
+			if (!resume || startedAt == null) {
+				startedAt = Instant.now();
+			}
+			if (!resume) {
+				errors.clear();
+				jdbcTemplate.execute("DROP TABLE IF EXISTS " + qualified(shadowTableName));
+			}
+			else if (savedStatus == Status.SWAPPING && !tableExists(shadowTableName)) {
+				// The swap committed before the restart
+				complete();
+				return;
+			}
+
+			dimensions = embeddingModel.dimensions();
+			jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + qualified(shadowTableName)
+					+ " (id uuid PRIMARY KEY, content text, metadata json, embedding vector(" + dimensions + "))");
+
+			// Albums already in the shadow table with their current text are done
+			Map<String, String> shadowHashes = new VectorDocumentIndex(jdbcTemplate, schemaName, shadowTableName)
+				.contentHashes();
+			Set<String> albumIds = new HashSet<>();
+			List<Document> documents = new ArrayList<>();
+			int done = 0;
+			for (Album album : albumRepository.findAll()) {
+				Document document = AlbumVectorDocuments.toDocument(album);
+				albumIds.add(document.getId());
+				if (Objects.equals(shadowHashes.get(document.getId()),
+						document.getMetadata().get(AlbumVectorDocuments.CONTENT_HASH))) {
+					done++;
+				}
+				else {
+					documents.add(document);
+				}
+			}
+			List<String> deleted = shadowHashes.keySet().stream().filter(id -> !albumIds.contains(id)).toList();
+			if (!deleted.isEmpty()) {
+				new NamedParameterJdbcTemplate(jdbcTemplate).update(
+						"DELETE FROM " + qualified(shadowTableName) + " WHERE id::text IN (:ids)",
+						Map.of("ids", deleted));
+			}
+
+			total = albumIds.size();
+			processed.set(done);
+			failed.set(0);
+			processedAtRunStart = done;
+			runStartNanos = System.nanoTime();
+			checkpoint(null);
+			logger.info("🏗️  Re-indexing {} albums into {} ({} dimensions), {} already done", total,
+					shadowTableName, dimensions, done);
+
+			IngestionResult result = ingestionPipeline.ingest("reindex", documents, batchSize, this::writeBatch);
+			failed.set(result.failed());
+			if (result.failed() > 0) {
+				fail("%d documents could not be embedded, resume to retry them".formatted(result.failed()));
+				return;
+			}
+
+			status = Status.SWAPPING;
+			checkpoint(null);
+			swap();
+			complete();
+
+			// Albums written during the rebuild went to the old table; this sync carries them over
+			vectorStoreInitializer.populateVectorStore();
+		}
+		catch (Exception e) {
+			logger.error("Vector re-index failed", e);
+			fail(e.getMessage());
+		}
+		finally {
+			runStartNanos = 0;
+			running.set(false);
+		}
+	}
+
+	private void writeBatch(List<Document> batch) {
+		try {
+			// Split like PgVectorStore.add does, so no embedding request exceeds the model's input limit
+			List<float[]> embeddings = embeddingModel.embed(batch, EmbeddingOptionsBuilder.builder().build(),
+					batchingStrategy);
+			jdbcTemplate.batchUpdate("INSERT INTO " + qualified(shadowTableName)
+					+ " (id, content, metadata, embedding) VALUES (?::uuid, ?, ?::json, ?::vector)"
+					+ " ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata,"
+					+ " embedding = EXCLUDED.embedding", new BatchPreparedStatementSetter() {
+
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							Document document = batch.get(i);
+							ps.setString(1, document.getId());
+							ps.setString(2, document.getText());
+							ps.setString(3, toJson(document.getMetadata()));
+							ps.setString(4, toVectorLiteral(embeddings.get(i)));
+						}
+
+						@Override
+						public int getBatchSize() {
+							return batch.size();
+						}
+					});
+			processed.addAndGet(batch.size());
+			checkpoint(null);
+		}
+		catch (RuntimeException e) {
+			recordError(e.getMessage());
+			throw e;
+		}
+	}
+
+	private void swap() {
+		String retiredTableName = tableName + "_retired";
+		String liveIndexName = DEFAULT_TABLE_NAME.equals(tableName) ? DEFAULT_INDEX_NAME : tableName + "_index";
+		String shadowIndexName = shadowTableName + "_index";
+		if (indexMethod != null) {
+			jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + shadowIndexName + " ON " + qualified(shadowTableName)
+					+ " USING " + indexMethod + " (embedding " + operatorClass + ")");
+		}
+		// Postgres DDL is transactional, so searches see either the old table or the new one
+		transactionTemplate.executeWithoutResult(tx -> {
+			jdbcTemplate.execute("ALTER TABLE IF EXISTS " + qualified(tableName) + " RENAME TO " + retiredTableName);
+			jdbcTemplate.execute("ALTER TABLE " + qualified(shadowTableName) + " RENAME TO " + tableName);
+			jdbcTemplate.execute("DROP TABLE IF EXISTS " + qualified(retiredTableName));
+			// The name PgVectorStore gives its index, so a restart does not build a second one
+			jdbcTemplate.execute("ALTER INDEX IF EXISTS " + qualified(shadowIndexName) + " RENAME TO " + liveIndexName);
+		});
+		logger.info("🔀 Swapped the re-indexed vectors into {}", tableName);
+	}
+
+	private void complete() {
+		status = Status.COMPLETED;
+		finishedAt = Instant.now();
+		checkpoint(null);
+		logger.info("✅ Vector re-index complete: {} documents", processed.get());
+	}
+
+	private void fail(String message) {
+		status = Status.FAILED;
+		finishedAt = Instant.now();
+		recordError(message);
+		try {
+			checkpoint(message);
+		}
+		catch (Exception e) {
+			logger.warn("⚠️  Could not save the vector re-index checkpoint: {}", e.getMessage());
+		}
+	}
+
+	private void recordError(String message) {
+		errors.addLast(Instant.now() + " " + message);
+		while (errors.size() > MAX_ERRORS) {
+			errors.pollFirst();
+		}
+	}
+
+	private void ensureJobTable() {
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + qualified(jobTableName)
+				+ " (id int PRIMARY KEY, status varchar(16) NOT NULL, dimensions int, total int, processed int,"
+				+ " failed int, started_at timestamptz, updated_at timestamptz, finished_at timestamptz,"
+				+ " last_error text)");
+	}
+
+	private synchronized void checkpoint(String lastError) {
+		jdbcTemplate.update("INSERT INTO " + qualified(jobTableName)
+				+ " (id, status, dimensions, total, processed, failed, started_at, updated_at, finished_at, last_error)"
+				+ " VALUES (1, ?, ?, ?, ?, ?, ?, now(), ?, ?) ON CONFLICT (id) DO UPDATE SET status = EXCLUDED.status,"
+				+ " dimensions = EXCLUDED.dimensions, total = EXCLUDED.total, processed = EXCLUDED.processed,"
+				+ " failed = EXCLUDED.failed, started_at = EXCLUDED.started_at, updated_at = now(),"
+				+ " finished_at = EXCLUDED.finished_at, last_error = EXCLUDED.last_error", status.name(), dimensions,
+				total, processed.get(), failed.get(), startedAt != null ? Timestamp.from(startedAt) : null,
+				finishedAt != null ? Timestamp.from(finishedAt) : null, lastError);
+	}
+
+	private boolean tableExists(String table) {
+		return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+				qualified(table)));
+	}
+
+	private String qualified(String table) {
+		return schemaName + "." + table;
+	}
+
+	private String toJson(Map<String, Object> metadata) {
+		try {
+			return objectMapper.writeValueAsString(metadata);
+		}
+		catch (JsonProcessingException e) {
+			throw new IllegalStateException("Could not serialize document metadata", e);
+		}
+	}
+
+	private static String toVectorLiteral(float[] embedding) {
+		StringBuilder literal = new StringBuilder(embedding.length * 10).append('[');
+		for (int i = 0; i < embedding.length; i++) {
+			if (i > 0) {
+				literal.append(',');
+			}
+			literal.append(embedding[i]);
+		}
+		return literal.append(']').toString();
+	}
+
+	public record Progress(Status status, int dimensions, int total, int processed, int failed,
+			Double documentsPerSecond, Long etaSeconds, Instant startedAt, Instant finishedAt, List<String> errors) {
+	}
+
+}
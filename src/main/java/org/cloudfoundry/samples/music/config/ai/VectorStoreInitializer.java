@@ -16,23 +16,23 @@
 
 package org.cloudfoundry.samples.music.config.ai;
 
-import org.cloudfoundry.samples.music.web.AIController;
-
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
 
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
-import org.springframework.scheduling.annotation.Async;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.cloudfoundry.samples.music.config.ai.EmbeddingIngestionPipeline.IngestionResult;
 import org.cloudfoundry.samples.music.domain.Album;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.repository.CrudRepository;
@@ -40,6 +40,11 @@ import org.springframework.data.repository.CrudRepository;
 import org.springframework.core.annotation.Order;
 
 /**
+ * Brings the vector store in line with the album catalog once the application is ready. Only
+ * albums whose {@link AlbumVectorDocuments#CONTENT_HASH content hash} differs from the stored
+ * one are embedded, and vectors of deleted albums are removed, so a restart without changes
+ * makes no embedding calls. The work runs on its own thread and goes through the
+ * {@link EmbeddingIngestionPipeline}, so startup never waits for the embedding service.
  *
  * @author Christian Tzolov
  */
@@ -50,36 +55,30 @@ public class VectorStoreInitializer implements ApplicationListener<ApplicationRe
 
     private final VectorStore vectorStore;
 
+    private final EmbeddingIngestionPipeline ingestionPipeline;
+
+    private final VectorDocumentIndex vectorDocumentIndex;
+
     @Autowired
     private CrudRepository<Album, String> albumRepository;
 
-    public VectorStoreInitializer(VectorStore vectorStore) {
+    public VectorStoreInitializer(VectorStore vectorStore, EmbeddingIngestionPipeline ingestionPipeline,
+            VectorDocumentIndex vectorDocumentIndex) {
         this.vectorStore = vectorStore;
+        this.ingestionPipeline = ingestionPipeline;
+        this.vectorDocumentIndex = vectorDocumentIndex;
     }
 
     @Override
     public void onApplicationEvent(ApplicationReadyEvent event) {
-        // Run vector store initialization asynchronously to prevent blocking startup
-        initializeAsync();
+        // A dedicated thread, since an @Async method called on this would bypass the proxy
+        Thread.ofVirtual().name("vector-store-init").start(this::initialize);
     }
 
-    @Async
-    public void initializeAsync() {
+    public void initialize() {
         try {
             logger.info("=== Vector Store Initialization Starting ===");
 
-            // Check if we have albums in the database
-            long albumCount = albumRepository.count();
-            logger.info("Found {} albums in database", albumCount);
-
-            if (albumCount == 0) {
-                logger.warn("No albums found in database - vector store will be empty");
-                return;
-            }
-
-            // Skip the similarity search check for now since it's hanging
-            // and just proceed with population
-            logger.info("Proceeding directly to vector store population...");
             populateVectorStore();
 
         } catch (Exception e) {
@@ -89,75 +88,50 @@ public class VectorStoreInitializer implements ApplicationListener<ApplicationRe
 
     public void populateVectorStore() {
         try {
-            logger.info("Starting vector store population...");
+            logger.info("Starting vector store sync...");
 
-            Iterable<Album> albums = albumRepository.findAll();
+            // Without the index every album is embedded again, as upserts this is still correct
+            Map<String, String> storedHashes = vectorDocumentIndex.isAvailable()
+                    ? vectorDocumentIndex.contentHashes() : Map.of();
+            Set<String> albumIds = new HashSet<>();
             List<Document> documents = new ArrayList<>();
+            int unchanged = 0;
 
-            int count = 0;
-            for (Album album : albums) {
+            for (Album album : albumRepository.findAll()) {
                 try {
-                    logger.debug("Processing album: {} - {}", album.getArtist(), album.getTitle());
-                    String albumDoc = AIController.generateVectorDoc(album);
-                    documents.add(new Document(album.getId(), albumDoc, new HashMap<>()));
-                    count++;
+                    albumIds.add(album.getId());
+                    Document document = AlbumVectorDocuments.toDocument(album);
+                    if (Objects.equals(storedHashes.get(album.getId()),
+                            document.getMetadata().get(AlbumVectorDocuments.CONTENT_HASH))) {
+                        unchanged++;
+                        continue;
+                    }
+                    logger.debug("Album changed: {} - {}", album.getArtist(), album.getTitle());
+                    documents.add(document);
                 } catch (Exception e) {
                     logger.error("Error preparing document for album {}: {}", album.getId(), e.getMessage());
                 }
             }
 
-            logger.info("Prepared {} documents for vector store", count);
+            List<String> orphaned = storedHashes.keySet().stream()
+                    .filter(id -> !albumIds.contains(id))
+                    .toList();
+            logger.info("Vector store sync: {} albums unchanged, {} new or changed, {} vectors orphaned",
+                    unchanged, documents.size(), orphaned.size());
 
-            if (!documents.isEmpty()) {
-                // Start with just ONE document to test if embedding works at all
-                logger.info("Testing with single document first...");
-                List<Document> singleDoc = List.of(documents.get(0));
-
-                try {
-                    logger.info("Attempting to add single test document...");
-                    this.vectorStore.add(singleDoc);
-                    logger.info("SUCCESS: Single document added successfully!");
-
-                    // If that works, process the rest in batches
-                    logger.info("Proceeding with remaining documents in batches...");
-                    int batchSize = 3; // Smaller batches
-                    for (int i = 1; i < documents.size(); i += batchSize) {
-                        int endIndex = Math.min(i + batchSize, documents.size());
-                        List<Document> batch = documents.subList(i, endIndex);
-
-                        logger.info("Adding batch of {} documents (documents {}-{})...",
-                            batch.size(), i + 1, endIndex);
-
-                        try {
-                            this.vectorStore.add(batch);
-                            logger.info("Successfully added batch of {} documents", batch.size());
-                            Thread.sleep(2000); // Longer delay between batches
-
-                        } catch (Exception e) {
-                            logger.error("Error adding batch to vector store: {}", e.getMessage(), e);
-                            // Continue with next batch even if one fails
-                        }
-                    }
-
-                } catch (Exception e) {
-                    logger.error("FAILED: Could not add even a single document: {}", e.getMessage(), e);
-                    logger.error("This suggests the embedding service or vector store has a fundamental issue");
-                    return; // Don't continue if we can't even add one document
-                }
+            if (!orphaned.isEmpty()) {
+                vectorStore.delete(orphaned);
+                logger.info("Deleted {} vectors of albums that no longer exist", orphaned.size());
+            }
 
-                // Verify the addition worked
-                try {
-                    logger.info("Verifying vector store population...");
-                    List<Document> verifyDocs = this.vectorStore.similaritySearch("album");
-                    logger.info("Verification: Vector store now contains {} documents", verifyDocs.size());
-                } catch (Exception e) {
-                    logger.warn("Could not verify vector store contents: {}", e.getMessage());
-                }
-            } else {
-                logger.warn("No documents to add to vector store");
+            if (documents.isEmpty()) {
+                logger.info("=== Vector Store Initialization Complete: already up to date ===");
+                return;
             }
 
-            logger.info("=== Vector Store Initialization Complete ===");
+            IngestionResult result = ingestionPipeline.ingest("startup", documents);
+            logger.info("=== Vector Store Initialization Complete: {} of {} documents indexed in {} ms ===",
+                    result.succeeded(), result.submitted(), result.elapsed().toMillis());
 
         } catch (Exception e) {
             logger.error("Error populating vector store", e);
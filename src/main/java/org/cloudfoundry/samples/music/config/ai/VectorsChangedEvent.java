@@ -0,0 +1,25 @@
+/*
+ * Copyright 2023-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cloudfoundry.samples.music.config.ai;
+
+/**
+ * Published after album vectors have been written to or deleted from the vector store.
+ * Album writes are synced to the store some time after their {@code AlbumChangedEvent}, so
+ * anything derived from retrieval results has to be refreshed again at this point.
+ */
+public record VectorsChangedEvent(String source) {
+}
@@ -0,0 +1,49 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Decorates an MCP {@link ToolCallback} so repeated calls with the same arguments are
+ * answered from the {@link McpToolResultCache} until the tool's TTL runs out.
+ */
+class CachingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final McpToolResultCache cache;
+    private final UUID connectionId;
+    private final Duration ttl;
+
+    CachingToolCallback(ToolCallback delegate, McpToolResultCache cache, UUID connectionId, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.connectionId = connectionId;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return cache.getOrCall(connectionId, getToolDefinition().name(), toolInput, ttl,
+                () -> toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput));
+    }
+}
@@ -1,14 +1,27 @@
 package org.cloudfoundry.samples.music.config.mcp;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.modelcontextprotocol.client.McpAsyncClient;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.cloudfoundry.samples.music.config.ai.ToolSelector;
+import org.cloudfoundry.samples.music.domain.McpServerConnection;
 import org.cloudfoundry.samples.music.service.DynamicMcpClientManager;
+import org.cloudfoundry.samples.music.service.DynamicMcpClientManager.ClientRegistration;
+import org.cloudfoundry.samples.music.service.DynamicMcpClientManager.ReplicaEndpoint;
+import org.cloudfoundry.samples.music.service.McpServerConnectionService;
+import org.cloudfoundry.samples.music.service.McpToolsChangedEvent;
 import org.springframework.ai.mcp.AsyncMcpToolCallbackProvider;
 import org.springframework.ai.mcp.McpToolFilter;
 import org.springframework.ai.mcp.McpToolNamePrefixGenerator;
@@ -17,8 +30,10 @@ import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -29,76 +44,195 @@ public class DynamicMcpToolCallbackProvider implements ToolCallbackProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(DynamicMcpToolCallbackProvider.class);
 
+    // Connection tag for tools of the clients configured under spring.ai.mcp.client
+    private static final String BASE_CONNECTION_NAME = "spring-ai";
+
     private final DynamicMcpClientManager clientManager;
     private final ObjectProvider<List<McpAsyncClient>> baseClientsProvider;
     private final ObjectProvider<McpToolFilter> toolFilterProvider;
     private final ObjectProvider<McpToolNamePrefixGenerator> namePrefixProvider;
     private final ObjectProvider<ToolContextToMcpMetaConverter> metaConverterProvider;
 
-    // Cache to prevent duplicate tool registration during the same request
-    private volatile ToolCallback[] cachedToolCallbacks = null;
-    private volatile long lastCacheUpdate = 0;
-    private static final long CACHE_EXPIRY_MS = 30000; // 30 seconds
+    private final ObjectProvider<ToolSelector> toolSelectorProvider;
+    private final McpToolResultCache toolResultCache;
+    private final McpEndpointBalancer endpointBalancer;
+    private final McpToolMetrics toolMetrics;
+    private final ObjectProvider<McpServerConnectionService> connectionServiceProvider;
+
+    // Tool callbacks are served from an immutable snapshot that is rebuilt in the background
+    // whenever the set of MCP servers or their tools changes, never on the request path
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mcp-tool-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong requestedVersion = new AtomicLong();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final Object rebuildLock = new Object();
+    private volatile ToolSnapshot snapshot;
 
     public DynamicMcpToolCallbackProvider(DynamicMcpClientManager clientManager,
             ObjectProvider<List<McpAsyncClient>> baseClientsProvider,
             ObjectProvider<McpToolFilter> toolFilterProvider,
             ObjectProvider<McpToolNamePrefixGenerator> namePrefixProvider,
-            ObjectProvider<ToolContextToMcpMetaConverter> metaConverterProvider) {
+            ObjectProvider<ToolContextToMcpMetaConverter> metaConverterProvider,
+            ObjectProvider<ToolSelector> toolSelectorProvider,
+            McpToolResultCache toolResultCache,
+            McpEndpointBalancer endpointBalancer,
+            McpToolMetrics toolMetrics,
+            ObjectProvider<McpServerConnectionService> connectionServiceProvider) {
         this.clientManager = clientManager;
         this.baseClientsProvider = baseClientsProvider;
         this.toolFilterProvider = toolFilterProvider;
         this.namePrefixProvider = namePrefixProvider;
         this.metaConverterProvider = metaConverterProvider;
+        this.toolSelectorProvider = toolSelectorProvider;
+        this.toolResultCache = toolResultCache;
+        this.endpointBalancer = endpointBalancer;
+        this.toolMetrics = toolMetrics;
+        this.connectionServiceProvider = connectionServiceProvider;
     }
 
     @Override
     public ToolCallback[] getToolCallbacks() {
-        // Check cache first to prevent duplicate tool registrations
-        long currentTime = System.currentTimeMillis();
-        if (cachedToolCallbacks != null && (currentTime - lastCacheUpdate) < CACHE_EXPIRY_MS) {
-            logger.debug("🔧 Returning cached tool callbacks ({} tools)", cachedToolCallbacks.length);
-            return cachedToolCallbacks;
+        ToolSnapshot current = snapshot;
+        if (current != null) {
+            logger.debug("🔧 Returning tool snapshot v{} ({} tools)", current.version(), current.toolCallbacks().length);
+            return current.toolCallbacks();
+        }
+        // Only a request that arrives before the startup snapshot is ready builds it inline
+        return rebuild().toolCallbacks();
+    }
+
+    public long getSnapshotVersion() {
+        ToolSnapshot current = snapshot;
+        return current != null ? current.version() : 0;
+    }
+
+    /**
+     * Number of tools in the current snapshot, without building one if none exists yet.
+     */
+    public int getSnapshotToolCount() {
+        ToolSnapshot current = snapshot;
+        return current != null ? current.toolCallbacks().length : 0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild("startup");
+    }
+
+    @EventListener
+    public void onToolsChanged(McpToolsChangedEvent event) {
+        scheduleRebuild(event.connectionId() != null ? "connection " + event.connectionId() : "tools/list_changed");
+    }
+
+    private void scheduleRebuild(String reason) {
+        requestedVersion.incrementAndGet();
+        // Changes that arrive while a rebuild is queued are picked up by that rebuild
+        if (rebuildQueued.compareAndSet(false, true)) {
+            logger.info("🔄 Scheduling MCP tool snapshot rebuild ({})", reason);
+            rebuildExecutor.execute(() -> {
+                rebuildQueued.set(false);
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    logger.warn("⚠️  MCP tool snapshot rebuild failed, keeping v{}: {}", getSnapshotVersion(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    private ToolSnapshot rebuild() {
+        synchronized (rebuildLock) {
+            long version = requestedVersion.get();
+            ToolSnapshot current = snapshot;
+            if (current != null && current.version() == version) {
+                return current;
+            }
+            ToolCallback[] toolCallbacks = buildToolCallbacks();
+            ToolSnapshot rebuilt = new ToolSnapshot(version, toolCallbacks);
+            snapshot = rebuilt;
+            logger.info("📸 MCP tool snapshot v{} ready with {} tools", version, toolCallbacks.length);
+
+            ToolSelector toolSelector = toolSelectorProvider.getIfAvailable();
+            if (toolSelector != null) {
+                toolSelector.warmUp(toolCallbacks);
+            }
+            return rebuilt;
         }
+    }
 
-        List<McpAsyncClient> clients = new ArrayList<>();
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
 
+    private ToolCallback[] buildToolCallbacks() {
         List<McpAsyncClient> baseClients = baseClientsProvider.getIfAvailable(() -> List.<McpAsyncClient>of());
-        if (baseClients != null) {
-            clients.addAll(baseClients);
+        if (baseClients == null) {
+            baseClients = List.of();
         }
 
-        Collection<McpAsyncClient> dynamicClients = clientManager.getActiveAsyncClients();
-        clients.addAll(dynamicClients);
+        // Dynamic clients are built one registration at a time so each callback knows which
+        // connection it belongs to, and with it that connection's result caching policy
+        List<ClientRegistration> dynamicRegistrations = clientManager.snapshot().entrySet().stream()
+                .filter(entry -> entry.getValue().asyncClient() != null)
+                .filter(entry -> {
+                    // Tools of a server whose circuit is open stay out until it recovers
+                    boolean available = clientManager.isAvailable(entry.getKey());
+                    if (!available) {
+                        logger.info("🚫 Leaving out tools of MCP connection '{}', circuit is open",
+                                entry.getValue().source().getName());
+                    }
+                    return available;
+                })
+                .map(Map.Entry::getValue)
+                .toList();
+
+        List<McpServerConnection> warmStartConnections = warmStartConnections();
 
-        logger.info("🔧 MCP Tool Discovery: Found {} total MCP clients ({} base + {} dynamic)",
-                   clients.size(), baseClients != null ? baseClients.size() : 0, dynamicClients.size());
+        int clientCount = baseClients.size() + dynamicRegistrations.size();
+        logger.info("🔧 MCP Tool Discovery: Found {} total MCP clients ({} base + {} dynamic, {} still connecting)",
+                   clientCount, baseClients.size(), dynamicRegistrations.size(), warmStartConnections.size());
 
-        if (clients.isEmpty()) {
+        if (clientCount == 0 && warmStartConnections.isEmpty()) {
             logger.warn("⚠️  No MCP clients available - no tools will be registered");
             return new ToolCallback[0];
         }
 
-        AsyncMcpToolCallbackProvider.Builder builder = AsyncMcpToolCallbackProvider.builder().mcpClients(clients);
-
-        McpToolFilter filter = toolFilterProvider.getIfUnique(() -> (client, tool) -> true);
-        if (filter != null) {
-            builder.toolFilter(filter);
+        Map<String, ToolCallback> callbacksByName = new LinkedHashMap<>();
+        if (!baseClients.isEmpty()) {
+            ToolCallback[] callbacks = providerFor(baseClients).getToolCallbacks();
+            for (int i = 0; i < callbacks.length; i++) {
+                callbacks[i] = toolMetrics.instrument(BASE_CONNECTION_NAME, callbacks[i]);
+            }
+            addToolCallbacks(callbacksByName, callbacks);
         }
-
-        McpToolNamePrefixGenerator prefixGenerator = namePrefixProvider
-                .getIfUnique(McpToolNamePrefixGenerator::defaultGenerator);
-        if (prefixGenerator != null) {
-            builder.toolNamePrefixGenerator(prefixGenerator);
+        // Metrics sit inside the result cache so they measure calls that reach the server
+        for (ClientRegistration registration : dynamicRegistrations) {
+            ToolCallback[] callbacks = registrationToolCallbacks(registration);
+            for (int i = 0; i < callbacks.length; i++) {
+                callbacks[i] = toolResultCache.wrap(registration.source(), toolMetrics.instrument(
+                        registration.source().getName(), registration.source().getId(), clientManager, callbacks[i]));
+            }
+            addToolCallbacks(callbacksByName, callbacks);
         }
-
         ToolContextToMcpMetaConverter metaConverter = metaConverterProvider
                 .getIfUnique(ToolContextToMcpMetaConverter::defaultConverter);
-        if (metaConverter != null) {
-            builder.toolContextToMcpMetaConverter(metaConverter);
+        for (McpServerConnection connection : warmStartConnections) {
+            ToolCallback[] callbacks = connection.getToolDefinitions().stream()
+                    .map(definition -> new StoredToolCallback(definition, connection.getId(), connection.getName(),
+                            clientManager, metaConverter))
+                    .map(callback -> toolResultCache.wrap(connection,
+                            toolMetrics.instrument(connection.getName(), connection.getId(), clientManager, callback)))
+                    .toArray(ToolCallback[]::new);
+            logger.info("💾 Serving {} stored tools of MCP connection '{}' until it reconnects", callbacks.length,
+                    connection.getName());
+            addToolCallbacks(callbacksByName, callbacks);
         }
 
-        ToolCallback[] toolCallbacks = builder.build().getToolCallbacks();
+        ToolCallback[] toolCallbacks = callbacksByName.values().toArray(ToolCallback[]::new);
 
         logger.info("🛠️  MCP Tool Registration Complete: {} tool callbacks registered", toolCallbacks.length);
 
@@ -127,14 +261,93 @@ public class DynamicMcpToolCallbackProvider implements ToolCallbackProvider {
         }
 
         if (toolCallbacks.length == 0) {
-            logger.warn("⚠️  No tools discovered from {} MCP clients - check server connectivity and tool definitions", clients.size());
+            logger.warn("⚠️  No tools discovered from {} MCP clients - check server connectivity and tool definitions", clientCount);
         }
 
-        // Update cache
-        cachedToolCallbacks = toolCallbacks;
-        lastCacheUpdate = currentTime;
-
         return toolCallbacks;
     }
+
+    // Connections still registering after a restart, whose tool definitions were stored last run
+    private List<McpServerConnection> warmStartConnections() {
+        McpServerConnectionService connectionService = connectionServiceProvider.getIfAvailable();
+        if (connectionService == null) {
+            return List.of();
+        }
+        Map<UUID, ClientRegistration> live = clientManager.snapshot();
+        try {
+            return connectionService.listConnections().stream()
+                    .filter(connection -> connection.getId() != null && !live.containsKey(connection.getId()))
+                    .filter(connection -> clientManager.isRegistrationPending(connection.getId()))
+                    .filter(connection -> clientManager.isAvailable(connection.getId()))
+                    .filter(connection -> !connection.getToolDefinitions().isEmpty())
+                    .toList();
+        } catch (Exception e) {
+            logger.warn("⚠️  Could not load stored MCP tool definitions: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // A pooled server contributes each tool once, routed to whichever instance the balancer picks
+    private ToolCallback[] registrationToolCallbacks(ClientRegistration registration) {
+        List<ReplicaEndpoint> endpoints = registration.endpoints();
+        if (endpoints.size() == 1) {
+            return providerFor(List.of(registration.asyncClient())).getToolCallbacks();
+        }
+
+        Map<String, List<String>> endpointsByTool = new LinkedHashMap<>();
+        Map<String, List<ToolCallback>> callbacksByTool = new LinkedHashMap<>();
+        for (ReplicaEndpoint endpoint : endpoints) {
+            try {
+                for (ToolCallback callback : providerFor(List.of(endpoint.asyncClient())).getToolCallbacks()) {
+                    String name = callback.getToolDefinition().name();
+                    endpointsByTool.computeIfAbsent(name, key -> new ArrayList<>()).add(endpoint.transportDescription());
+                    callbacksByTool.computeIfAbsent(name, key -> new ArrayList<>()).add(callback);
+                }
+            } catch (Exception e) {
+                logger.warn("⚠️  Could not list tools of MCP endpoint {}: {}", endpoint.transportDescription(), e.getMessage());
+            }
+        }
+
+        List<ToolCallback> callbacks = new ArrayList<>();
+        callbacksByTool.forEach((name, toolCallbacks) -> callbacks.add(toolCallbacks.size() == 1 ? toolCallbacks.get(0)
+                : new LoadBalancedToolCallback(endpointsByTool.get(name), toolCallbacks, endpointBalancer)));
+        logger.info("⚖️  MCP connection '{}' balances {} tools across {} endpoints", registration.source().getName(),
+                callbacks.size(), endpoints.size());
+        return callbacks.toArray(ToolCallback[]::new);
+    }
+
+    private AsyncMcpToolCallbackProvider providerFor(List<McpAsyncClient> clients) {
+        AsyncMcpToolCallbackProvider.Builder builder = AsyncMcpToolCallbackProvider.builder().mcpClients(clients);
+
+        McpToolFilter filter = toolFilterProvider.getIfUnique(() -> (client, tool) -> true);
+        if (filter != null) {
+            builder.toolFilter(filter);
+        }
+
+        McpToolNamePrefixGenerator prefixGenerator = namePrefixProvider
+                .getIfUnique(McpToolNamePrefixGenerator::defaultGenerator);
+        if (prefixGenerator != null) {
+            builder.toolNamePrefixGenerator(prefixGenerator);
+        }
+
+        ToolContextToMcpMetaConverter metaConverter = metaConverterProvider
+                .getIfUnique(ToolContextToMcpMetaConverter::defaultConverter);
+        if (metaConverter != null) {
+            builder.toolContextToMcpMetaConverter(metaConverter);
+        }
+        return builder.build();
+    }
+
+    private void addToolCallbacks(Map<String, ToolCallback> callbacksByName, ToolCallback[] callbacks) {
+        for (ToolCallback callback : callbacks) {
+            String name = callback.getToolDefinition().name();
+            if (callbacksByName.putIfAbsent(name, callback) != null) {
+                logger.warn("⚠️  Skipping duplicate MCP tool '{}', keeping the first server that provides it", name);
+            }
+        }
+    }
+
+    private record ToolSnapshot(long version, ToolCallback[] toolCallbacks) {
+    }
 }
 
@@ -0,0 +1,74 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import java.util.List;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * One tool offered by several instances of the same MCP server. Each call is sent to the
+ * instance the {@link McpEndpointBalancer} picks, and its latency and outcome are fed back.
+ * Errors the tool itself reports leave the routing state alone.
+ */
+class LoadBalancedToolCallback implements ToolCallback {
+
+    private final List<String> endpoints;
+    private final List<ToolCallback> callbacks;
+    private final McpEndpointBalancer balancer;
+
+    LoadBalancedToolCallback(List<String> endpoints, List<ToolCallback> callbacks, McpEndpointBalancer balancer) {
+        this.endpoints = List.copyOf(endpoints);
+        this.callbacks = List.copyOf(callbacks);
+        this.balancer = balancer;
+    }
+
+    ToolCallback primary() {
+        return callbacks.get(0);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return primary().getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return primary().getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        int choice = balancer.choose(endpoints);
+        String endpoint = endpoints.get(choice);
+        ToolCallback callback = callbacks.get(choice);
+
+        balancer.started(endpoint);
+        long start = System.nanoTime();
+        try {
+            String result = toolContext != null ? callback.call(toolInput, toolContext) : callback.call(toolInput);
+            balancer.finished(endpoint, System.nanoTime() - start, true);
+            return result;
+        }
+        catch (RuntimeException ex) {
+            if (McpEndpointBalancer.isEndpointFailure(ex)) {
+                balancer.finished(endpoint, System.nanoTime() - start, false);
+            }
+            else {
+                // The server answered with an error, e.g. bad arguments; the instance itself is fine
+                balancer.toolFailed(endpoint);
+            }
+            throw ex;
+        }
+        catch (Error error) {
+            balancer.finished(endpoint, System.nanoTime() - start, false);
+            throw error;
+        }
+    }
+}
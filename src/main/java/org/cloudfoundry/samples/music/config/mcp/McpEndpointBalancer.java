@@ -0,0 +1,167 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.modelcontextprotocol.spec.McpTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks which instance of a pooled MCP server serves a tool call. Each endpoint keeps an
+ * exponentially weighted moving average of its recent call latency; the healthy endpoint with
+ * the lowest average, weighted by the calls it is already serving, wins. An endpoint whose
+ * call fails in transport or times out is skipped for a cool-down period unless no other
+ * endpoint is left.
+ */
+@Component
+@Profile("mcp")
+public class McpEndpointBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpEndpointBalancer.class);
+
+    private static final double LATENCY_SMOOTHING = 0.3;
+
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final long failureCooldownNanos;
+
+    public McpEndpointBalancer(MeterRegistry meterRegistry,
+            @Value("${spring-metal.mcp.load-balancing.failure-cooldown:30s}") Duration failureCooldown) {
+        this.meterRegistry = meterRegistry;
+        this.failureCooldownNanos = failureCooldown.toNanos();
+    }
+
+    /**
+     * Index of the endpoint that should serve the next call.
+     */
+    int choose(List<String> endpoints) {
+        long now = System.nanoTime();
+        int best = 0;
+        double bestScore = Double.MAX_VALUE;
+        boolean bestHealthy = false;
+        for (int i = 0; i < endpoints.size(); i++) {
+            EndpointStats endpoint = statsFor(endpoints.get(i));
+            boolean healthy = endpoint.isHealthy(now);
+            // Endpoints without samples score 0 so every new instance gets tried
+            double score = endpoint.latencyMillis * (endpoint.inFlight.get() + 1);
+            if ((healthy && !bestHealthy) || (healthy == bestHealthy && score < bestScore)) {
+                best = i;
+                bestScore = score;
+                bestHealthy = healthy;
+            }
+        }
+        return best;
+    }
+
+    void started(String endpoint) {
+        statsFor(endpoint).inFlight.incrementAndGet();
+    }
+
+    void finished(String endpointName, long elapsedNanos, boolean success) {
+        EndpointStats endpoint = statsFor(endpointName);
+        endpoint.inFlight.decrementAndGet();
+        double elapsedMillis = elapsedNanos / 1_000_000.0;
+        synchronized (endpoint) {
+            if (success) {
+                // Failures often return fast, so only successful calls count towards latency
+                endpoint.latencyMillis = endpoint.latencyMillis == 0 ? elapsedMillis
+                        : LATENCY_SMOOTHING * elapsedMillis + (1 - LATENCY_SMOOTHING) * endpoint.latencyMillis;
+                endpoint.unhealthyUntil = 0;
+            }
+            else {
+                endpoint.unhealthyUntil = System.nanoTime() + failureCooldownNanos;
+                logger.warn("⚖️  MCP endpoint {} failed, routing around it for {}s", endpoint.name,
+                        TimeUnit.NANOSECONDS.toSeconds(failureCooldownNanos));
+            }
+        }
+        Counter.builder("spring.metal.mcp.endpoint.calls")
+                .description("Tool calls routed to each MCP server instance")
+                .tag("endpoint", endpoint.name)
+                .tag("outcome", success ? "success" : "error")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // The server answered, but the tool reported an error: neither latency nor health change
+    void toolFailed(String endpointName) {
+        EndpointStats endpoint = statsFor(endpointName);
+        endpoint.inFlight.decrementAndGet();
+        Counter.builder("spring.metal.mcp.endpoint.calls")
+                .description("Tool calls routed to each MCP server instance")
+                .tag("endpoint", endpoint.name)
+                .tag("outcome", "tool-error")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Whether a failed call means the endpoint itself is in trouble: a transport error or a
+     * timeout anywhere in the cause chain. A tool result flagged as an error, or a JSON-RPC
+     * error the server answered with, says nothing about the endpoint's health.
+     */
+    static boolean isEndpointFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+            if (cause instanceof IOException || cause instanceof TimeoutException
+                    || cause instanceof McpTransportException) {
+                return true;
+            }
+            // Reactor's block(timeout) reports an expired wait this way
+            if (cause instanceof IllegalStateException && cause.getMessage() != null
+                    && cause.getMessage().startsWith("Timeout on blocking read")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Routing state per endpoint, ordered by endpoint.
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        long now = System.nanoTime();
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        stats.forEach((name, endpoint) -> {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("healthy", endpoint.isHealthy(now));
+            summary.put("latencyMillis", Math.round(endpoint.latencyMillis * 10) / 10.0);
+            summary.put("inFlight", endpoint.inFlight.get());
+            snapshot.put(name, summary);
+        });
+        return snapshot;
+    }
+
+    private EndpointStats statsFor(String endpoint) {
+        return stats.computeIfAbsent(endpoint, EndpointStats::new);
+    }
+
+    private static final class EndpointStats {
+
+        private final String name;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latencyMillis;
+        private volatile long unhealthyUntil;
+
+        private EndpointStats(String name) {
+            this.name = name;
+        }
+
+        boolean isHealthy(long now) {
+            return unhealthyUntil == 0 || now - unhealthyUntil > 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.mcp.customizer.McpAsyncClientCustomizer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.modelcontextprotocol.client.McpClient;
+import org.cloudfoundry.samples.music.service.McpToolsChangedEvent;
+import reactor.core.publisher.Mono;
+
+/**
+ * Turns {@code notifications/tools/list_changed} from any MCP server into a
+ * {@link McpToolsChangedEvent}, so the tool snapshot is rebuilt without waiting for a
+ * reconnect. Applies to configured clients and, through the client configurer, to
+ * connections registered at runtime.
+ */
+@Component
+@Profile("mcp")
+public class McpToolListChangedCustomizer implements McpAsyncClientCustomizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpToolListChangedCustomizer.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public McpToolListChangedCustomizer(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void customize(String serverConfigurationName, McpClient.AsyncSpec spec) {
+        spec.toolsChangeConsumer(tools -> Mono.fromRunnable(() -> {
+            logger.info("🔔 MCP server '{}' changed its tools ({} now available)", serverConfigurationName, tools.size());
+            eventPublisher.publishEvent(new McpToolsChangedEvent(null));
+        }));
+    }
+}
@@ -0,0 +1,184 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import org.cloudfoundry.samples.music.config.ai.ChatPipelineMetrics;
+import org.cloudfoundry.samples.music.service.DynamicMcpClientManager;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer metrics for every MCP tool call, tagged with the connection and tool name.
+ *
+ * <ul>
+ * <li>{@code spring.metal.mcp.tool.calls} - call latency, tagged with {@code model} and {@code outcome}</li>
+ * <li>{@code spring.metal.mcp.tool.errors} - failed calls, tagged with {@code exception}</li>
+ * <li>{@code spring.metal.mcp.tool.payload} - request and response size in bytes, tagged with {@code direction}</li>
+ * <li>{@code spring.metal.mcp.tool.active} - calls currently in flight</li>
+ * </ul>
+ *
+ * <p>
+ * When the chat pipeline is active the same latency is also recorded as its {@code tool}
+ * stage, see {@link ChatPipelineMetrics}.
+ */
+@Component
+@Profile("mcp")
+public class McpToolMetrics {
+
+    public static final String CALL_TIMER = "spring.metal.mcp.tool.calls";
+
+    public static final String ERROR_COUNTER = "spring.metal.mcp.tool.errors";
+
+    public static final String PAYLOAD_SUMMARY = "spring.metal.mcp.tool.payload";
+
+    public static final String ACTIVE_GAUGE = "spring.metal.mcp.tool.active";
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<ChatPipelineMetrics> chatMetricsProvider;
+    private final Map<ToolKey, AtomicInteger> activeCalls = new ConcurrentHashMap<>();
+
+    public McpToolMetrics(MeterRegistry meterRegistry, ObjectProvider<ChatPipelineMetrics> chatMetricsProvider) {
+        this.meterRegistry = meterRegistry;
+        this.chatMetricsProvider = chatMetricsProvider;
+    }
+
+    /**
+     * Wrap the callback of a tool served by the named connection so each call is measured.
+     */
+    public ToolCallback instrument(String connectionName, ToolCallback callback) {
+        return instrument(connectionName, null, null, callback);
+    }
+
+    /**
+     * Like {@link #instrument(String, ToolCallback)}, also reporting each call's outcome to
+     * the circuit breaker of the dynamic connection.
+     */
+    public ToolCallback instrument(String connectionName, UUID connectionId, DynamicMcpClientManager clientManager,
+            ToolCallback callback) {
+        return new MeteredToolCallback(callback, this, connectionName != null ? connectionName : "unknown",
+                connectionId, connectionId != null ? clientManager : null);
+    }
+
+    AtomicInteger activeCalls(String connection, String tool) {
+        return activeCalls.computeIfAbsent(new ToolKey(connection, tool), key -> {
+            AtomicInteger active = new AtomicInteger();
+            Gauge.builder(ACTIVE_GAUGE, active, AtomicInteger::get)
+                    .description("MCP tool calls in flight")
+                    .tag("connection", connection)
+                    .tag("tool", tool)
+                    .register(meterRegistry);
+            return active;
+        });
+    }
+
+    void recordCall(String connection, String tool, boolean success, long elapsedNanos) {
+        ChatPipelineMetrics chatMetrics = chatMetricsProvider.getIfAvailable();
+        String model = chatMetrics != null ? chatMetrics.getModelName() : "none";
+        callTimer(connection, tool, model, success ? "success" : "error").record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (chatMetrics != null) {
+            chatMetrics.record(ChatPipelineMetrics.STAGE_TOOL, elapsedNanos, success);
+        }
+    }
+
+    private Timer callTimer(String connection, String tool, String model, String outcome) {
+        return Timer.builder(CALL_TIMER)
+                .description("Latency of MCP tool calls")
+                .tag("connection", connection)
+                .tag("tool", tool)
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+    }
+
+    void recordError(String connection, String tool, Throwable error) {
+        // The MCP callbacks wrap every failure, the cause says what actually went wrong
+        Throwable cause = error instanceof ToolExecutionException && error.getCause() != null ? error.getCause() : error;
+        Counter.builder(ERROR_COUNTER)
+                .description("Failed MCP tool calls")
+                .tag("connection", connection)
+                .tag("tool", tool)
+                .tag("exception", cause.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void recordPayload(String connection, String tool, String direction, String payload) {
+        DistributionSummary.builder(PAYLOAD_SUMMARY)
+                .description("Size of MCP tool call arguments and results")
+                .baseUnit("bytes")
+                .tag("connection", connection)
+                .tag("tool", tool)
+                .tag("direction", direction)
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry)
+                .record(payload != null ? payload.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    /**
+     * Calls, errors and recent latency percentiles of successful calls per connection and
+     * tool, keyed {@code connection/tool} and ordered by tool name. Two connections serving a
+     * tool of the same name get an entry each.
+     */
+    public Map<String, Map<String, Object>> summary() {
+        Map<ToolKey, Map<String, Object>> byTool = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(CALL_TIMER).timers()) {
+            ToolKey key = new ToolKey(timer.getId().getTag("connection"), timer.getId().getTag("tool"));
+            Map<String, Object> stats = byTool.computeIfAbsent(key, this::emptyStats);
+            stats.merge("calls", timer.count(), (a, b) -> (long) a + (long) b);
+            if ("success".equals(timer.getId().getTag("outcome"))) {
+                for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                    String name = percentile.percentile() == 0.5 ? "p50Millis" : "p95Millis";
+                    stats.put(name, Math.round(percentile.value(TimeUnit.MILLISECONDS) * 10) / 10.0);
+                }
+            }
+        }
+        for (Counter counter : meterRegistry.find(ERROR_COUNTER).counters()) {
+            ToolKey key = new ToolKey(counter.getId().getTag("connection"), counter.getId().getTag("tool"));
+            byTool.computeIfAbsent(key, this::emptyStats)
+                    .merge("errors", (long) counter.count(), (a, b) -> (long) a + (long) b);
+        }
+
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        byTool.forEach((key, stats) -> summary.put(key.connection() + "/" + key.tool(), stats));
+        return summary;
+    }
+
+    private Map<String, Object> emptyStats(ToolKey key) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connection", key.connection());
+        stats.put("tool", key.tool());
+        stats.put("calls", 0L);
+        stats.put("errors", 0L);
+        AtomicInteger active = activeCalls.get(key);
+        stats.put("inFlight", active != null ? active.get() : 0);
+        return stats;
+    }
+
+    private record ToolKey(String connection, String tool) implements Comparable<ToolKey> {
+
+        @Override
+        public int compareTo(ToolKey other) {
+            int byTool = tool.compareTo(other.tool);
+            return byTool != 0 ? byTool : connection.compareTo(other.connection);
+        }
+    }
+}
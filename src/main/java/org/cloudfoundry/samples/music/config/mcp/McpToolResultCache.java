@@ -0,0 +1,196 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cloudfoundry.samples.music.domain.McpServerConnection;
+import org.cloudfoundry.samples.music.service.McpToolsChangedEvent;
+import org.cloudfoundry.samples.music.service.support.ExpiringLruCache;
+import org.springframework.ai.mcp.AsyncMcpToolCallback;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the results of idempotent MCP tool calls, keyed on connection, tool name and the
+ * canonicalized JSON arguments. Which tools are cached, and for how long, is configured per
+ * connection and per tool on {@link McpServerConnection}.
+ */
+@Component
+@Profile("mcp")
+public class McpToolResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpToolResultCache.class);
+
+    static final String CACHE_NAME = "mcp-tool-result";
+
+    static final String LOOKUP_COUNTER = "spring.metal.mcp.tool.cache";
+
+    private final ExpiringLruCache<Key, CachedResult> cache;
+    private final ObjectMapper canonicalMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration defaultTtl;
+    private final AtomicLong generation = new AtomicLong();
+
+    public McpToolResultCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${spring-metal.mcp.tool-cache.max-entries:1000}") int maxEntries,
+            @Value("${spring-metal.mcp.tool-cache.default-ttl:5m}") Duration defaultTtl) {
+        this.cache = new ExpiringLruCache<>(maxEntries, defaultTtl);
+        this.canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.meterRegistry = meterRegistry;
+        this.defaultTtl = defaultTtl;
+        Gauge.builder("cache.size", cache, ExpiringLruCache::size).tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        Gauge.builder("cache.evictions", cache, ExpiringLruCache::evictionCount).tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wrap the callback when the connection caches this tool, otherwise return it unchanged.
+     */
+    public ToolCallback wrap(McpServerConnection connection, ToolCallback callback) {
+        Duration ttl = ttlFor(connection, callback);
+        if (ttl == null) {
+            return callback;
+        }
+        logger.debug("🗃️  Caching results of tool '{}' for {}s", callback.getToolDefinition().name(), ttl.toSeconds());
+        return new CachingToolCallback(callback, this, connection.getId(), ttl);
+    }
+
+    Duration ttlFor(McpServerConnection connection, ToolCallback callback) {
+        if (connection == null || connection.getId() == null) {
+            return null;
+        }
+        String toolName = callback.getToolDefinition().name();
+        String originalName = originalToolName(callback);
+
+        // A per-tool entry wins over the connection default, and 0 opts the tool out
+        Map<String, Integer> toolTtls = connection.getToolCacheTtls();
+        Integer toolTtl = toolTtls.containsKey(originalName) ? toolTtls.get(originalName) : toolTtls.get(toolName);
+        if (toolTtl != null) {
+            return toolTtl > 0 ? Duration.ofSeconds(toolTtl) : null;
+        }
+        if (!connection.isToolCacheEnabled()) {
+            return null;
+        }
+        Integer connectionTtl = connection.getToolCacheTtlSeconds();
+        Duration ttl = connectionTtl != null ? Duration.ofSeconds(connectionTtl) : defaultTtl;
+        return ttl.isZero() || ttl.isNegative() ? null : ttl;
+    }
+
+    private static String originalToolName(ToolCallback callback) {
+        ToolCallback mcpTool = callback instanceof MeteredToolCallback metered ? metered.delegate() : callback;
+        mcpTool = mcpTool instanceof LoadBalancedToolCallback balanced ? balanced.primary() : mcpTool;
+        if (mcpTool instanceof AsyncMcpToolCallback mcpCallback) {
+            return mcpCallback.getOriginalToolName();
+        }
+        if (mcpTool instanceof StoredToolCallback stored) {
+            return stored.getOriginalToolName();
+        }
+        return callback.getToolDefinition().name();
+    }
+
+    String getOrCall(UUID connectionId, String toolName, String toolInput, Duration ttl, Supplier<String> call) {
+        Key key = new Key(connectionId, toolName, canonicalize(toolInput));
+        CachedResult cached = cache.get(key);
+        if (cached != null) {
+            lookupCounter(toolName, "hit").increment();
+            logger.debug("🗃️  Tool cache hit for '{}'", toolName);
+            return cached.result();
+        }
+        lookupCounter(toolName, "miss").increment();
+
+        long currentGeneration = generation.get();
+        // Failures propagate to the caller and are never cached
+        String result = call.get();
+        if (result != null && currentGeneration == generation.get()) {
+            cache.put(key, new CachedResult(connectionId, result), ttl);
+        }
+        return result;
+    }
+
+    /**
+     * Lookups, hits and hit ratio per tool since startup, ordered by tool name.
+     */
+    public Map<String, Map<String, Object>> hitRatios() {
+        Map<String, long[]> counts = new TreeMap<>();
+        for (Counter counter : meterRegistry.find(LOOKUP_COUNTER).counters()) {
+            long[] hitsAndMisses = counts.computeIfAbsent(counter.getId().getTag("tool"), tool -> new long[2]);
+            hitsAndMisses["hit".equals(counter.getId().getTag("result")) ? 0 : 1] += (long) counter.count();
+        }
+
+        Map<String, Map<String, Object>> ratios = new LinkedHashMap<>();
+        counts.forEach((tool, hitsAndMisses) -> {
+            long lookups = hitsAndMisses[0] + hitsAndMisses[1];
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("lookups", lookups);
+            stats.put("hits", hitsAndMisses[0]);
+            stats.put("hitRatio", lookups > 0 ? (double) hitsAndMisses[0] / lookups : 0.0);
+            ratios.put(tool, stats);
+        });
+        return ratios;
+    }
+
+    public void invalidate(UUID connectionId, String reason) {
+        generation.incrementAndGet();
+        int before = cache.size();
+        if (connectionId != null) {
+            cache.removeIf(cached -> connectionId.equals(cached.connectionId()));
+        }
+        else {
+            cache.clear();
+        }
+        int removed = before - cache.size();
+        if (removed > 0) {
+            logger.info("🗃️  Tool cache dropped {} results: {}", removed, reason);
+        }
+    }
+
+    @EventListener
+    public void onMcpToolsChanged(McpToolsChangedEvent event) {
+        invalidate(event.connectionId(), event.connectionId() != null
+                ? "MCP tools changed for connection " + event.connectionId() : "MCP server tool list changed");
+    }
+
+    // Argument order and whitespace must not produce different keys for the same call
+    private String canonicalize(String toolInput) {
+        if (toolInput == null || toolInput.isBlank()) {
+            return "";
+        }
+        try {
+            return canonicalMapper.writeValueAsString(canonicalMapper.readValue(toolInput, Object.class));
+        }
+        catch (Exception e) {
+            return toolInput;
+        }
+    }
+
+    private Counter lookupCounter(String toolName, String result) {
+        return Counter.builder(LOOKUP_COUNTER)
+                .description("MCP tool result cache lookups")
+                .tag("tool", toolName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Key(UUID connectionId, String toolName, String arguments) {
+    }
+
+    private record CachedResult(UUID connectionId, String result) {
+    }
+}
@@ -0,0 +1,82 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudfoundry.samples.music.service.DynamicMcpClientManager;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Decorates an MCP {@link ToolCallback} so every call it makes to the server is recorded
+ * in {@link McpToolMetrics}. For dynamic connections the outcome also feeds the
+ * connection's circuit breaker: calls that fail in transport or time out count against it.
+ */
+class MeteredToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final McpToolMetrics metrics;
+    private final String connectionName;
+    private final UUID connectionId;
+    private final DynamicMcpClientManager clientManager;
+
+    MeteredToolCallback(ToolCallback delegate, McpToolMetrics metrics, String connectionName, UUID connectionId,
+            DynamicMcpClientManager clientManager) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.connectionName = connectionName;
+        this.connectionId = connectionId;
+        this.clientManager = clientManager;
+    }
+
+    ToolCallback delegate() {
+        return delegate;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String toolName = getToolDefinition().name();
+        metrics.recordPayload(connectionName, toolName, "request", toolInput);
+        AtomicInteger active = metrics.activeCalls(connectionName, toolName);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String result = toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+            success = true;
+            metrics.recordPayload(connectionName, toolName, "response", result);
+            if (clientManager != null) {
+                clientManager.recordToolCallSuccess(connectionId);
+            }
+            return result;
+        }
+        catch (RuntimeException e) {
+            metrics.recordError(connectionName, toolName, e);
+            if (clientManager != null && McpEndpointBalancer.isEndpointFailure(e)) {
+                clientManager.recordToolCallFailure(connectionId, e.getMessage());
+            }
+            throw e;
+        }
+        finally {
+            active.decrementAndGet();
+            metrics.recordCall(connectionName, toolName, success, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import java.util.UUID;
+
+import io.modelcontextprotocol.spec.McpSchema;
+
+import org.cloudfoundry.samples.music.domain.McpToolDefinition;
+import org.cloudfoundry.samples.music.service.DynamicMcpClientManager;
+import org.cloudfoundry.samples.music.service.DynamicMcpClientManager.ClientRegistration;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.AsyncMcpToolCallback;
+import org.springframework.ai.mcp.ToolContextToMcpMetaConverter;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+
+/**
+ * Tool offered from its stored {@link McpToolDefinition} while its MCP server's first
+ * registration attempt is still running. A call waits up to the warm-start timeout for the
+ * connection to come up and then goes to the live client.
+ */
+class StoredToolCallback implements ToolCallback {
+
+    private final McpToolDefinition stored;
+    private final UUID connectionId;
+    private final String connectionName;
+    private final DynamicMcpClientManager clientManager;
+    private final ToolContextToMcpMetaConverter metaConverter;
+    private final ToolDefinition toolDefinition;
+
+    StoredToolCallback(McpToolDefinition stored, UUID connectionId, String connectionName,
+            DynamicMcpClientManager clientManager, ToolContextToMcpMetaConverter metaConverter) {
+        this.stored = stored;
+        this.connectionId = connectionId;
+        this.connectionName = connectionName;
+        this.clientManager = clientManager;
+        this.metaConverter = metaConverter;
+        this.toolDefinition = ToolDefinition.builder()
+                .name(stored.prefixedName())
+                .description(stored.description() != null ? stored.description() : stored.name())
+                .inputSchema(stored.inputSchema())
+                .build();
+    }
+
+    String getOriginalToolName() {
+        return stored.name();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        ClientRegistration registration = clientManager.awaitRegistration(connectionId);
+        if (registration == null || registration.asyncClient() == null) {
+            throw new ToolExecutionException(toolDefinition,
+                    new IllegalStateException("MCP server '%s' is not connected".formatted(connectionName)));
+        }
+
+        McpSchema.Tool tool = McpSchema.Tool.builder()
+                .name(stored.name())
+                .description(stored.description())
+                .inputSchema(stored.inputSchema())
+                .build();
+        AsyncMcpToolCallback.Builder builder = AsyncMcpToolCallback.builder()
+                .mcpClient(registration.asyncClient())
+                .tool(tool)
+                .prefixedToolName(stored.prefixedName());
+        if (metaConverter != null) {
+            builder.toolContextToMcpMetaConverter(metaConverter);
+        }
+        AsyncMcpToolCallback live = builder.build();
+        return toolContext != null ? live.call(toolInput, toolContext) : live.call(toolInput);
+    }
+}
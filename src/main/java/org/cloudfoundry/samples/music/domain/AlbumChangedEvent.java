@@ -0,0 +1,8 @@
+package org.cloudfoundry.samples.music.domain;
+
+/**
+ * Published whenever an album is created, updated or deleted so caches derived from
+ * the catalog can be refreshed. The album id is null when many albums changed at once.
+ */
+public record AlbumChangedEvent(String albumId) {
+}
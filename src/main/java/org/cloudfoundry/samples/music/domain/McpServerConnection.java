@@ -46,6 +46,11 @@ public class McpServerConnection {
     @Column(name = "base_url", nullable = false)
     private String baseUrl;
 
+    // Further instances of the same server, tool calls are balanced across all of them
+    @Column(name = "replica_base_urls", columnDefinition = "TEXT")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<String> replicaBaseUrls = new ArrayList<>();
+
     @Column(name = "endpoint", nullable = false)
     private String endpoint;
 
@@ -78,6 +83,27 @@ public class McpServerConnection {
     @JdbcTypeCode(SqlTypes.JSON)
     private List<String> availableTools = new ArrayList<>();
 
+    @Column(name = "tool_definitions", columnDefinition = "TEXT")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<McpToolDefinition> toolDefinitions = new ArrayList<>();
+
+    @Column(name = "tool_definitions_hash", length = 64)
+    private String toolDefinitionsHash;
+
+    // Tool results are only cached for idempotent tools: either every tool of the connection
+    // (toolCacheEnabled) or the tools listed in toolCacheTtls, where a TTL of 0 opts a tool out
+    @Column(name = "tool_cache_enabled")
+    private Boolean toolCacheEnabled = false;
+
+    @Column(name = "tool_cache_ttl_seconds")
+    private Integer toolCacheTtlSeconds;
+
+    @ElementCollection
+    @CollectionTable(name = "mcp_server_connection_tool_cache", joinColumns = @JoinColumn(name = "connection_id"))
+    @MapKeyColumn(name = "tool_name")
+    @Column(name = "ttl_seconds")
+    private Map<String, Integer> toolCacheTtls = new HashMap<>();
+
     public McpServerConnection() {
     }
 
@@ -105,6 +131,14 @@ public class McpServerConnection {
         this.baseUrl = baseUrl;
     }
 
+    public List<String> getReplicaBaseUrls() {
+        return replicaBaseUrls != null ? replicaBaseUrls : new ArrayList<>();
+    }
+
+    public void setReplicaBaseUrls(List<String> replicaBaseUrls) {
+        this.replicaBaseUrls = replicaBaseUrls != null ? new ArrayList<>(replicaBaseUrls) : new ArrayList<>();
+    }
+
     public String getEndpoint() {
         return endpoint;
     }
@@ -199,6 +233,68 @@ public class McpServerConnection {
         this.toolCount = this.availableTools.size();
     }
 
+    public List<McpToolDefinition> getToolDefinitions() {
+        return toolDefinitions != null ? toolDefinitions : new ArrayList<>();
+    }
+
+    public String getToolDefinitionsHash() {
+        return toolDefinitionsHash;
+    }
+
+    /**
+     * Replace the stored tool definitions, and with them the tool names and count. Returns
+     * false when the definitions are unchanged.
+     */
+    public boolean updateToolDefinitions(List<McpToolDefinition> definitions) {
+        String hash = McpToolDefinition.contentHash(definitions);
+        if (hash.equals(toolDefinitionsHash)) {
+            return false;
+        }
+        this.toolDefinitions = new ArrayList<>(definitions);
+        this.toolDefinitionsHash = hash;
+        updateToolInformation(definitions.stream().map(McpToolDefinition::name).toList());
+        return true;
+    }
+
+    /**
+     * Copy the outcome of the last registration attempt (status and discovered tools) from
+     * another instance of this connection, leaving its settings untouched.
+     */
+    public void copyRegistrationState(McpServerConnection other) {
+        this.status = other.status;
+        this.lastSuccessfulAt = other.lastSuccessfulAt;
+        this.lastFailureAt = other.lastFailureAt;
+        this.lastErrorMessage = other.lastErrorMessage;
+        this.availableTools = new ArrayList<>(other.getAvailableTools());
+        this.toolCount = other.toolCount;
+        this.toolDefinitions = new ArrayList<>(other.getToolDefinitions());
+        this.toolDefinitionsHash = other.toolDefinitionsHash;
+    }
+
+    public boolean isToolCacheEnabled() {
+        return Boolean.TRUE.equals(toolCacheEnabled);
+    }
+
+    public void setToolCacheEnabled(Boolean toolCacheEnabled) {
+        this.toolCacheEnabled = Boolean.TRUE.equals(toolCacheEnabled);
+    }
+
+    public Integer getToolCacheTtlSeconds() {
+        return toolCacheTtlSeconds;
+    }
+
+    public void setToolCacheTtlSeconds(Integer toolCacheTtlSeconds) {
+        this.toolCacheTtlSeconds = toolCacheTtlSeconds;
+    }
+
+    public Map<String, Integer> getToolCacheTtls() {
+        return toolCacheTtls != null ? toolCacheTtls : new HashMap<>();
+    }
+
+    public void setToolCacheTtls(Map<String, Integer> toolCacheTtls) {
+        this.toolCacheTtls = toolCacheTtls != null ? new HashMap<>(toolCacheTtls) : new HashMap<>();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
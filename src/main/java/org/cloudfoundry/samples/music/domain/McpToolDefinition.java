@@ -0,0 +1,39 @@
+package org.cloudfoundry.samples.music.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Tool definition as last listed by an MCP server, stored so the tool can be offered to
+ * the model before the server has reconnected after a restart.
+ *
+ * @param name the tool name on the MCP server
+ * @param prefixedName the name the tool is exposed to the model under
+ * @param description the tool description
+ * @param inputSchema the JSON schema of the tool arguments
+ */
+public record McpToolDefinition(String name, String prefixedName, String description, String inputSchema) {
+
+    /**
+     * SHA-256 over the definitions, so a refresh only rewrites them when something changed.
+     */
+    public static String contentHash(List<McpToolDefinition> definitions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (McpToolDefinition definition : definitions) {
+                for (String part : new String[] { definition.name(), definition.prefixedName(),
+                        definition.description(), definition.inputSchema() }) {
+                    digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
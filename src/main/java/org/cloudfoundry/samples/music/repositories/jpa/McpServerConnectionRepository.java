@@ -1,14 +1,26 @@
 package org.cloudfoundry.samples.music.repositories.jpa;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.cloudfoundry.samples.music.domain.McpServerConnection;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 @Profile("mcp")
 public interface McpServerConnectionRepository extends JpaRepository<McpServerConnection, UUID> {
 
     Optional<McpServerConnection> findByNameIgnoreCase(String name);
+
+    // Connections handed to registration and the tool snapshot are read after their
+    // transaction has ended, so their collections are fetched up front
+    @EntityGraph(attributePaths = {"defaultHeaders", "toolCacheTtls"})
+    Optional<McpServerConnection> findWithSettingsById(UUID id);
+
+    @EntityGraph(attributePaths = {"defaultHeaders", "toolCacheTtls"})
+    @Query("select c from McpServerConnection c")
+    List<McpServerConnection> findAllWithSettings();
 }
@@ -1,19 +1,27 @@
 package org.cloudfoundry.samples.music.service;
 
-import java.net.http.HttpClient;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.modelcontextprotocol.client.McpAsyncClient;
@@ -23,15 +31,24 @@ import io.modelcontextprotocol.client.transport.HttpClientStreamableHttpTranspor
 import io.modelcontextprotocol.client.transport.customizer.McpAsyncHttpClientRequestCustomizer;
 import io.modelcontextprotocol.client.transport.customizer.McpSyncHttpClientRequestCustomizer;
 import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.cloudfoundry.samples.music.domain.McpServerConnection;
+import org.cloudfoundry.samples.music.domain.McpToolDefinition;
+import org.cloudfoundry.samples.music.service.support.ConnectionCircuitBreaker;
 import org.cloudfoundry.samples.music.service.support.McpConnectionException;
+import org.springframework.ai.mcp.McpConnectionInfo;
+import org.springframework.ai.mcp.McpToolFilter;
+import org.springframework.ai.mcp.McpToolNamePrefixGenerator;
 import org.springframework.ai.mcp.client.common.autoconfigure.configurer.McpAsyncClientConfigurer;
 import org.springframework.ai.mcp.client.common.autoconfigure.configurer.McpSyncClientConfigurer;
 import org.springframework.ai.mcp.client.common.autoconfigure.properties.McpClientCommonProperties;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -48,50 +65,181 @@ public class DynamicMcpClientManager {
     private final ObjectProvider<McpSyncClientConfigurer> syncClientConfigurerProvider;
     private final ObjectProvider<McpAsyncHttpClientRequestCustomizer> asyncHttpCustomizerProvider;
     private final ObjectProvider<McpSyncHttpClientRequestCustomizer> syncHttpCustomizerProvider;
-
-    private final Map<UUID, ClientRegistration> registrations = new ConcurrentHashMap<>();
+    private final ApplicationEventPublisher eventPublisher;
+    private final SharedMcpHttpClient sharedHttpClient;
+    private final ObjectProvider<McpToolFilter> toolFilterProvider;
+    private final ObjectProvider<McpToolNamePrefixGenerator> namePrefixProvider;
+
+    // Copy-on-write registry: readers see an immutable map and never wait, writers swap in a new
+    // copy under registryLock, which is only held for the copy and never across network calls
+    private volatile Map<UUID, ClientRegistration> registrations = Map.of();
+    private final Object registryLock = new Object();
+    // Latest registration attempt per connection; results of superseded attempts are discarded
+    private final Map<UUID, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong generationSequence = new AtomicLong();
     private final Map<UUID, RetryState> retryStates = new ConcurrentHashMap<>();
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private final ScheduledExecutorService retryExecutor = Executors.newScheduledThreadPool(2);
+    // Connections whose first registration attempt has not settled; their stored tools are offered meanwhile
+    private final Map<UUID, CompletableFuture<Void>> pendingRegistrations = new ConcurrentHashMap<>();
+    private final ExecutorService registrationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // Only waits out retry delays; the retries themselves run on the registration executor
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor();
+    // Health rounds get their own thread so registrations stuck on a hung server cannot delay them
+    private final ScheduledExecutorService healthExecutor = Executors.newSingleThreadScheduledExecutor();
+    // Health of registered connections; an open circuit hides the connection's tools
+    private final Map<UUID, ConnectionCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    // Connections whose last health check is still running; the next round skips them
+    private final Set<UUID> probesInFlight = ConcurrentHashMap.newKeySet();
+    private final Duration healthCheckInterval;
+    private final Duration healthCheckTimeout;
+    private final int circuitFailureThreshold;
+    private final Duration circuitOpenDuration;
+    private final Duration warmStartTimeout;
 
     public DynamicMcpClientManager(McpClientCommonProperties commonProperties, ObjectMapper objectMapper,
             ObjectProvider<McpAsyncClientConfigurer> asyncClientConfigurerProvider,
             ObjectProvider<McpSyncClientConfigurer> syncClientConfigurerProvider,
             ObjectProvider<McpAsyncHttpClientRequestCustomizer> asyncHttpCustomizerProvider,
-            ObjectProvider<McpSyncHttpClientRequestCustomizer> syncHttpCustomizerProvider) {
+            ObjectProvider<McpSyncHttpClientRequestCustomizer> syncHttpCustomizerProvider,
+            ApplicationEventPublisher eventPublisher, SharedMcpHttpClient sharedHttpClient,
+            ObjectProvider<McpToolFilter> toolFilterProvider,
+            ObjectProvider<McpToolNamePrefixGenerator> namePrefixProvider,
+            @Value("${spring-metal.mcp.health.interval:15s}") Duration healthCheckInterval,
+            @Value("${spring-metal.mcp.health.timeout:5s}") Duration healthCheckTimeout,
+            @Value("${spring-metal.mcp.health.failure-threshold:3}") int circuitFailureThreshold,
+            @Value("${spring-metal.mcp.health.open-duration:30s}") Duration circuitOpenDuration,
+            @Value("${spring-metal.mcp.warm-start.timeout:5s}") Duration warmStartTimeout) {
         this.commonProperties = commonProperties;
         this.objectMapper = objectMapper;
         this.asyncClientConfigurerProvider = asyncClientConfigurerProvider;
         this.syncClientConfigurerProvider = syncClientConfigurerProvider;
         this.asyncHttpCustomizerProvider = asyncHttpCustomizerProvider;
         this.syncHttpCustomizerProvider = syncHttpCustomizerProvider;
+        this.eventPublisher = eventPublisher;
+        this.sharedHttpClient = sharedHttpClient;
+        this.toolFilterProvider = toolFilterProvider;
+        this.namePrefixProvider = namePrefixProvider;
+        this.healthCheckInterval = healthCheckInterval;
+        this.healthCheckTimeout = healthCheckTimeout;
+        this.circuitFailureThreshold = circuitFailureThreshold;
+        this.circuitOpenDuration = circuitOpenDuration;
+        this.warmStartTimeout = warmStartTimeout;
     }
 
+    @PostConstruct
+    public void startHealthMonitor() {
+        if (healthCheckInterval.isZero() || healthCheckInterval.isNegative()) {
+            logger.info("MCP connection health checks disabled");
+            return;
+        }
+        long intervalMillis = healthCheckInterval.toMillis();
+        healthExecutor.scheduleWithFixedDelay(this::checkHealth, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register the connection and wait for the outcome. The network calls run on the
+     * registration executor, so no registry lock is held while they are in progress.
+     */
     public RegistrationResult register(McpServerConnection connection) {
-        lock.writeLock().lock();
         try {
-            ClientRegistration existing = registrations.remove(connection.getId());
-            if (existing != null) {
-                existing.close();
+            return registerAsync(connection).join();
+        }
+        catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw ex;
+        }
+    }
 
-            if (!connection.isEnabled()) {
-                // Clear any retry state for disabled connections
-                retryStates.remove(connection.getId());
-                return RegistrationResult.disabled(connection.getName());
-            }
+    /**
+     * Start registering the connection in the background. The client that is currently
+     * registered for it keeps serving until the new one has initialized.
+     */
+    public CompletableFuture<RegistrationResult> registerAsync(McpServerConnection connection) {
+        UUID connectionId = connection.getId();
+        long generation = nextGeneration(connectionId);
+
+        if (!connection.isEnabled()) {
+            // Clear any retry state for disabled connections
+            retryStates.remove(connectionId);
+            settleRegistration(connectionId);
+            closeQuietly(unpublish(connectionId));
+            publishToolsChanged(connectionId);
+            return CompletableFuture.completedFuture(RegistrationResult.disabled(connection.getName()));
+        }
+
+        expectRegistration(connectionId);
+        return CompletableFuture
+                .supplyAsync(() -> attemptRegistrationWithRetry(connection, generation), registrationExecutor)
+                .whenComplete((result, error) -> {
+                    settleUnlessSuperseded(connectionId, result);
+                    publishToolsChanged(connectionId);
+                });
+    }
+
+    /**
+     * Mark connections that are about to be registered, so tools stored for them can be
+     * offered until their clients are up.
+     */
+    public void expectRegistrations(Collection<UUID> connectionIds) {
+        connectionIds.forEach(this::expectRegistration);
+        if (!connectionIds.isEmpty()) {
+            publishToolsChanged(null);
+        }
+    }
+
+    private void expectRegistration(UUID connectionId) {
+        pendingRegistrations.computeIfAbsent(connectionId, id -> new CompletableFuture<>());
+    }
 
-            return attemptRegistrationWithRetry(connection);
+    private void settleRegistration(UUID connectionId) {
+        CompletableFuture<Void> pending = pendingRegistrations.remove(connectionId);
+        if (pending != null) {
+            pending.complete(null);
         }
-        finally {
-            lock.writeLock().unlock();
+    }
+
+    // Stored tools are only offered until the first attempt settles: a server that is still
+    // down after it waits out its retries without tools. A superseded attempt leaves the
+    // pending state to the attempt that replaced it
+    private void settleUnlessSuperseded(UUID connectionId, RegistrationResult result) {
+        if (result == null || result.status() != RegistrationResult.Status.SUPERSEDED) {
+            settleRegistration(connectionId);
+        }
+    }
+
+    public boolean isRegistrationPending(UUID connectionId) {
+        return pendingRegistrations.containsKey(connectionId);
+    }
+
+    /**
+     * The connection's registration, waiting up to the warm-start timeout if it is still being
+     * set up.
+     */
+    public ClientRegistration awaitRegistration(UUID connectionId) {
+        CompletableFuture<Void> pending = pendingRegistrations.get(connectionId);
+        if (pending != null) {
+            Duration timeout = warmStartTimeout.compareTo(commonProperties.getRequestTimeout()) < 0
+                    ? warmStartTimeout : commonProperties.getRequestTimeout();
+            try {
+                pending.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.debug("MCP connection {} not ready after {} ms", connectionId, timeout.toMillis());
+            }
         }
+        return registrations.get(connectionId);
     }
 
-    private RegistrationResult attemptRegistrationWithRetry(McpServerConnection connection) {
+    private RegistrationResult attemptRegistrationWithRetry(McpServerConnection connection, long generation) {
         try {
             ClientRegistration registration = buildRegistration(connection, commonProperties.isInitialized());
-            registrations.put(connection.getId(), registration);
+            if (!publish(connection.getId(), registration, generation)) {
+                registration.close();
+                logger.info("Discarding superseded registration of MCP connection '{}'", connection.getName());
+                return RegistrationResult.superseded(connection.getName());
+            }
 
             // Clear retry state on successful connection
             retryStates.remove(connection.getId());
@@ -102,10 +250,13 @@ public class DynamicMcpClientManager {
 
         } catch (Exception ex) {
             logger.warn("Failed to register MCP connection '{}': {}", connection.getName(), ex.getMessage());
+            if (isCurrent(connection.getId(), generation)) {
+                closeQuietly(unpublish(connection.getId()));
+            }
 
             // Check if this is a retryable error
             if (isRetryableException(ex)) {
-                scheduleRetry(connection, ex);
+                scheduleRetry(connection, generation, ex);
                 return RegistrationResult.retryScheduled(connection.getName(), ex.getMessage());
             } else {
                 throw new McpConnectionException("Failed to register MCP connection '%s'".formatted(connection.getName()), ex);
@@ -134,7 +285,7 @@ public class DynamicMcpClientManager {
                ex instanceof java.io.IOException;
     }
 
-    private void scheduleRetry(McpServerConnection connection, Exception lastError) {
+    private void scheduleRetry(McpServerConnection connection, long generation, Exception lastError) {
         RetryState retryState = retryStates.computeIfAbsent(connection.getId(),
                                                            k -> new RetryState(connection.getName()));
 
@@ -145,38 +296,250 @@ public class DynamicMcpClientManager {
             logger.info("Scheduling retry {} for MCP connection '{}' in {} seconds",
                        retryState.attemptCount, connection.getName(), delay.getSeconds());
 
-            retryExecutor.schedule(() -> {
+            retryExecutor.schedule(() -> registrationExecutor.execute(() -> {
                 logger.info("Executing retry {} for MCP connection '{}'",
                            retryState.attemptCount, connection.getName());
 
-                lock.writeLock().lock();
-                try {
-                    if (connection.isEnabled() && !registrations.containsKey(connection.getId())) {
-                        attemptRegistrationWithRetry(connection);
+                // A newer register or deregister call supersedes this retry chain
+                if (!isCurrent(connection.getId(), generation)) {
+                    return;
+                }
+                if (connection.isEnabled() && !registrations.containsKey(connection.getId())) {
+                    RegistrationResult result = null;
+                    try {
+                        result = attemptRegistrationWithRetry(connection, generation);
+                    } catch (Exception ex) {
+                        logger.warn("Retry for MCP connection '{}' failed: {}", connection.getName(), ex.getMessage());
                     }
-                } finally {
-                    lock.writeLock().unlock();
+                    settleUnlessSuperseded(connection.getId(), result);
+                } else {
+                    settleRegistration(connection.getId());
                 }
-            }, delay.getSeconds(), java.util.concurrent.TimeUnit.SECONDS);
+                publishToolsChanged(connection.getId());
+            }), delay.getSeconds(), TimeUnit.SECONDS);
         } else {
             logger.error("Max retry attempts ({}) exceeded for MCP connection '{}'. Last error: {}",
                         retryState.maxRetries, connection.getName(), lastError.getMessage());
             retryStates.remove(connection.getId());
+            settleRegistration(connection.getId());
         }
     }
 
-    public void deregister(UUID connectionId) {
-        lock.writeLock().lock();
+    private void checkHealth() {
         try {
-            ClientRegistration registration = registrations.remove(connectionId);
-            if (registration != null) {
-                registration.close();
+            registrations.forEach((connectionId, registration) -> {
+                ConnectionCircuitBreaker breaker = circuitBreakers.computeIfAbsent(connectionId,
+                        id -> new ConnectionCircuitBreaker(circuitFailureThreshold, circuitOpenDuration));
+                // Open circuits are left alone until their wait is over, then probed half-open
+                if (breaker.shouldCheck() && probesInFlight.add(connectionId)) {
+                    try {
+                        registrationExecutor.execute(() -> probe(connectionId, registration, breaker));
+                    } catch (RuntimeException ex) {
+                        probesInFlight.remove(connectionId);
+                        throw ex;
+                    }
+                }
+            });
+        } catch (Exception e) {
+            logger.warn("MCP health check round failed: {}", e.getMessage());
+        }
+    }
+
+    private void probe(UUID connectionId, ClientRegistration registration, ConnectionCircuitBreaker breaker) {
+        CompletableFuture<Void> ping = CompletableFuture.completedFuture(null);
+        try {
+            ping = pingAsync(registration);
+            recordProbe(connectionId, registration, breaker, ping);
+        } finally {
+            // A sync ping cannot be cancelled, so the connection stays busy until it returns
+            ping.whenComplete((ignored, ex) -> probesInFlight.remove(connectionId));
+        }
+    }
+
+    private void recordProbe(UUID connectionId, ClientRegistration registration, ConnectionCircuitBreaker breaker,
+            CompletableFuture<Void> ping) {
+        String name = registration.source().getName();
+        boolean changed;
+        try {
+            ping.get(healthCheckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            changed = breaker.recordSuccess();
+            if (changed) {
+                logger.info("💚 MCP connection '{}' is healthy again, circuit closed", name);
             }
-            // Clear any pending retry state
-            retryStates.remove(connectionId);
+        } catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = ex instanceof ExecutionException && ex.getCause() != null
+                    ? ex.getCause() : ex;
+            String error = cause instanceof TimeoutException
+                    ? "No ping response within " + healthCheckTimeout().toMillis() + " ms" : cause.getMessage();
+            changed = breaker.recordFailure(error);
+            if (changed) {
+                logger.warn("💔 MCP connection '{}' failed {} health checks, circuit open: {}", name,
+                        circuitFailureThreshold, error);
+            } else {
+                logger.debug("MCP connection '{}' health check failed: {}", name, error);
+            }
+        }
+        // Only the registration that was checked may change the tool snapshot
+        if (changed && registrations.get(connectionId) == registration) {
+            publishToolsChanged(connectionId);
+        }
+    }
+
+    private Duration healthCheckTimeout() {
+        return healthCheckTimeout.compareTo(commonProperties.getRequestTimeout()) < 0
+                ? healthCheckTimeout : commonProperties.getRequestTimeout();
+    }
+
+    // A pooled server is healthy while any of its instances answers, so all instances are
+    // pinged at once and the first answer wins. The caller bounds the wait with the health
+    // check timeout; the future completes when the ping really returns
+    private CompletableFuture<Void> pingAsync(ClientRegistration registration) {
+        if (registration.syncClient() != null) {
+            return CompletableFuture.runAsync(() -> registration.syncClient().ping(), registrationExecutor);
+        }
+        List<ReplicaEndpoint> endpoints = registration.endpoints();
+        if (endpoints.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Duration timeout = healthCheckTimeout();
+        CompletableFuture<Void> anyAnswered = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(endpoints.size());
+        for (ReplicaEndpoint endpoint : endpoints) {
+            endpoint.asyncClient().ping().timeout(timeout).toFuture().whenComplete((result, ex) -> {
+                if (ex == null) {
+                    anyAnswered.complete(null);
+                } else if (pending.decrementAndGet() == 0) {
+                    anyAnswered.completeExceptionally(ex);
+                }
+            });
+        }
+        return anyAnswered;
+    }
+
+    /**
+     * Record a tool call of the connection that failed in transport or timed out. Enough of
+     * them in a row open the circuit even while the server still answers pings, and keep the
+     * stored tools of a connection that is still coming up out of the prompt.
+     */
+    public void recordToolCallFailure(UUID connectionId, String error) {
+        ClientRegistration registration = registrations.get(connectionId);
+        if (registration == null && !isRegistrationPending(connectionId)) {
+            return;
+        }
+        ConnectionCircuitBreaker breaker = circuitBreakers.computeIfAbsent(connectionId,
+                id -> new ConnectionCircuitBreaker(circuitFailureThreshold, circuitOpenDuration));
+        if (breaker.recordCallFailure(error)) {
+            logger.warn("💔 MCP connection '{}' failed {} tool calls in a row, circuit open: {}",
+                    registration != null ? registration.source().getName() : connectionId, circuitFailureThreshold,
+                    error);
+            publishToolsChanged(connectionId);
+        }
+    }
+
+    public void recordToolCallSuccess(UUID connectionId) {
+        ConnectionCircuitBreaker breaker = circuitBreakers.get(connectionId);
+        if (breaker != null) {
+            breaker.recordCallSuccess();
         }
-        finally {
-            lock.writeLock().unlock();
+    }
+
+    /**
+     * Whether the connection's tools should be offered, i.e. its circuit is closed.
+     */
+    public boolean isAvailable(UUID connectionId) {
+        ConnectionCircuitBreaker breaker = circuitBreakers.get(connectionId);
+        return breaker == null || breaker.allowsTraffic();
+    }
+
+    public ConnectionCircuitBreaker.Snapshot getHealth(UUID connectionId) {
+        ConnectionCircuitBreaker breaker = circuitBreakers.get(connectionId);
+        return breaker != null ? breaker.snapshot() : null;
+    }
+
+    public void deregister(UUID connectionId) {
+        // Dropping the generation makes any in-flight registration for this connection stale
+        generations.remove(connectionId);
+        settleRegistration(connectionId);
+        // Clear any pending retry state
+        retryStates.remove(connectionId);
+        closeQuietly(unpublish(connectionId));
+        circuitBreakers.remove(connectionId);
+        publishToolsChanged(connectionId);
+    }
+
+    private long nextGeneration(UUID connectionId) {
+        long generation = generationSequence.incrementAndGet();
+        generations.put(connectionId, generation);
+        return generation;
+    }
+
+    private boolean isCurrent(UUID connectionId, long generation) {
+        Long current = generations.get(connectionId);
+        return current != null && current == generation;
+    }
+
+    private boolean publish(UUID connectionId, ClientRegistration registration, long generation) {
+        ClientRegistration previous;
+        synchronized (registryLock) {
+            if (!isCurrent(connectionId, generation)) {
+                return false;
+            }
+            Map<UUID, ClientRegistration> updated = new HashMap<>(registrations);
+            previous = updated.put(connectionId, registration);
+            registrations = Map.copyOf(updated);
+            // A fresh client starts with a closed circuit
+            circuitBreakers.remove(connectionId);
+        }
+        closeQuietly(previous);
+        return true;
+    }
+
+    private ClientRegistration unpublish(UUID connectionId) {
+        synchronized (registryLock) {
+            if (!registrations.containsKey(connectionId)) {
+                return null;
+            }
+            Map<UUID, ClientRegistration> updated = new HashMap<>(registrations);
+            ClientRegistration removed = updated.remove(connectionId);
+            registrations = Map.copyOf(updated);
+            circuitBreakers.remove(connectionId);
+            return removed;
+        }
+    }
+
+    private void closeQuietly(ClientRegistration registration) {
+        if (registration == null) {
+            return;
+        }
+        try {
+            registration.close();
+        } catch (Exception e) {
+            logger.debug("Error closing MCP client for '{}': {}", registration.source().getName(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        registrationExecutor.shutdownNow();
+        retryExecutor.shutdownNow();
+        healthExecutor.shutdownNow();
+        Map<UUID, ClientRegistration> current;
+        synchronized (registryLock) {
+            current = registrations;
+            registrations = Map.of();
+        }
+        current.values().forEach(this::closeQuietly);
+    }
+
+    private void publishToolsChanged(UUID connectionId) {
+        // Listeners run synchronously, so this is never called while registryLock is held
+        try {
+            eventPublisher.publishEvent(new McpToolsChangedEvent(connectionId));
+        } catch (Exception e) {
+            logger.warn("Failed to publish MCP tools change for connection {}: {}", connectionId, e.getMessage());
         }
     }
 
@@ -199,69 +562,79 @@ public class DynamicMcpClientManager {
         if (commonProperties.getType() != McpClientCommonProperties.ClientType.ASYNC) {
             return List.of();
         }
-        lock.readLock().lock();
-        try {
-            List<McpAsyncClient> clients = new ArrayList<>();
-            for (ClientRegistration registration : registrations.values()) {
-                if (registration.asyncClient() != null) {
-                    clients.add(registration.asyncClient());
-                }
+        List<McpAsyncClient> clients = new ArrayList<>();
+        for (ClientRegistration registration : registrations.values()) {
+            if (registration.asyncClient() != null) {
+                clients.add(registration.asyncClient());
             }
-            return Collections.unmodifiableList(clients);
-        }
-        finally {
-            lock.readLock().unlock();
         }
+        return Collections.unmodifiableList(clients);
     }
 
     public Collection<McpSyncClient> getActiveSyncClients() {
         if (commonProperties.getType() != McpClientCommonProperties.ClientType.SYNC) {
             return List.of();
         }
-        lock.readLock().lock();
-        try {
-            List<McpSyncClient> clients = new ArrayList<>();
-            for (ClientRegistration registration : registrations.values()) {
-                if (registration.syncClient() != null) {
-                    clients.add(registration.syncClient());
-                }
+        List<McpSyncClient> clients = new ArrayList<>();
+        for (ClientRegistration registration : registrations.values()) {
+            if (registration.syncClient() != null) {
+                clients.add(registration.syncClient());
             }
-            return Collections.unmodifiableList(clients);
-        }
-        finally {
-            lock.readLock().unlock();
         }
+        return Collections.unmodifiableList(clients);
     }
 
     public Map<UUID, ClientRegistration> snapshot() {
-        lock.readLock().lock();
-        try {
-            return Map.copyOf(registrations);
+        return registrations;
+    }
+
+    public List<String> getAvailableToolsForClient(UUID connectionId) {
+        ClientRegistration registration = registrations.get(connectionId);
+        if (registration == null) {
+            return List.of();
         }
-        finally {
-            lock.readLock().unlock();
+
+        if (registration.asyncClient() != null) {
+            return getToolsFromAsyncClient(registration.asyncClient());
+        } else if (registration.syncClient() != null) {
+            return getToolsFromSyncClient(registration.syncClient());
         }
+
+        return List.of();
     }
 
-    public List<String> getAvailableToolsForClient(UUID connectionId) {
-        lock.readLock().lock();
+    /**
+     * Full definitions of the tools the connection exposes, named the way the tool callback
+     * provider will name them. Only available for ASYNC clients.
+     */
+    public List<McpToolDefinition> getToolDefinitionsForClient(UUID connectionId) {
+        ClientRegistration registration = registrations.get(connectionId);
+        if (registration == null || registration.asyncClient() == null) {
+            return List.of();
+        }
+        McpAsyncClient client = registration.asyncClient();
+        McpConnectionInfo connectionInfo = new McpConnectionInfo(client.getClientCapabilities(),
+                client.getClientInfo(), client.getCurrentInitializationResult());
+        McpToolFilter filter = toolFilterProvider.getIfUnique(() -> (info, tool) -> true);
+        McpToolNamePrefixGenerator prefixGenerator = namePrefixProvider
+                .getIfUnique(McpToolNamePrefixGenerator::defaultGenerator);
         try {
-            ClientRegistration registration = registrations.get(connectionId);
-            if (registration == null) {
+            var listToolsResult = client.listTools().block(commonProperties.getRequestTimeout());
+            if (listToolsResult == null || listToolsResult.tools() == null) {
                 return List.of();
             }
-
-            if (registration.asyncClient() != null) {
-                return getToolsFromAsyncClient(registration.asyncClient());
-            } else if (registration.syncClient() != null) {
-                return getToolsFromSyncClient(registration.syncClient());
+            List<McpToolDefinition> definitions = new ArrayList<>();
+            for (McpSchema.Tool tool : listToolsResult.tools()) {
+                if (filter.test(connectionInfo, tool)) {
+                    definitions.add(new McpToolDefinition(tool.name(), prefixGenerator.prefixedToolName(connectionInfo, tool),
+                            tool.description(), objectMapper.writeValueAsString(tool.inputSchema())));
+                }
             }
-
+            return definitions;
+        } catch (Exception e) {
+            logger.warn("Failed to list tool definitions from async MCP client: {}", e.getMessage());
             return List.of();
         }
-        finally {
-            lock.readLock().unlock();
-        }
     }
 
     private List<String> getToolsFromAsyncClient(McpAsyncClient client) {
@@ -293,26 +666,86 @@ public class DynamicMcpClientManager {
     }
 
     private ClientRegistration buildRegistration(McpServerConnection connection, boolean initialize) {
-        HttpClientStreamableHttpTransport transport = buildTransport(connection);
-
         McpClientCommonProperties.ClientType clientType = commonProperties.getType();
         if (clientType == McpClientCommonProperties.ClientType.ASYNC) {
-            McpAsyncClient asyncClient = createAsyncClient(connection, transport, initialize);
-            return new ClientRegistration(connection, asyncClient, null, transportDescription(connection));
+            return buildAsyncRegistration(connection, initialize);
         }
 
-        McpSyncClient syncClient = createSyncClient(connection, transport, initialize);
-        return new ClientRegistration(connection, null, syncClient, transportDescription(connection));
+        if (!connection.getReplicaBaseUrls().isEmpty()) {
+            logger.warn("MCP connection '{}' lists replicas, but only ASYNC clients are load balanced; using {}",
+                    connection.getName(), connection.getBaseUrl());
+        }
+        HttpClientStreamableHttpTransport transport = buildTransport(connection.getBaseUrl(), connection);
+        try {
+            McpSyncClient syncClient = createSyncClient(connection, transport, initialize);
+            return new ClientRegistration(connection, null, syncClient, transportDescription(connection),
+                    sharedHttpClient::release, List.of());
+        }
+        catch (RuntimeException ex) {
+            sharedHttpClient.release();
+            throw ex;
+        }
     }
 
-    private HttpClientStreamableHttpTransport buildTransport(McpServerConnection connection) {
-        String baseUrl = connection.getBaseUrl();
+    // Every instance of a pooled server gets its own client; instances that fail to come up are
+    // left out, and the registration only fails when none of them is reachable
+    private ClientRegistration buildAsyncRegistration(McpServerConnection connection, boolean initialize) {
+        List<String> baseUrls = new ArrayList<>();
+        baseUrls.add(connection.getBaseUrl());
+        baseUrls.addAll(connection.getReplicaBaseUrls());
+
+        List<CompletableFuture<ReplicaEndpoint>> attempts = baseUrls.stream()
+                .map(baseUrl -> CompletableFuture.supplyAsync(() -> {
+                    HttpClientStreamableHttpTransport transport = buildTransport(baseUrl, connection);
+                    try {
+                        McpAsyncClient client = createAsyncClient(connection, transport, initialize);
+                        return new ReplicaEndpoint(transportDescription(baseUrl, connection), client);
+                    }
+                    catch (RuntimeException ex) {
+                        sharedHttpClient.release();
+                        throw ex;
+                    }
+                }, registrationExecutor))
+                .toList();
+
+        List<ReplicaEndpoint> endpoints = new ArrayList<>();
+        RuntimeException firstFailure = null;
+        for (int i = 0; i < attempts.size(); i++) {
+            try {
+                endpoints.add(attempts.get(i).join());
+            }
+            catch (CompletionException ex) {
+                RuntimeException cause = ex.getCause() instanceof RuntimeException runtime ? runtime : ex;
+                if (firstFailure == null) {
+                    firstFailure = cause;
+                }
+                if (baseUrls.size() > 1) {
+                    logger.warn("MCP connection '{}' instance {} unavailable: {}", connection.getName(),
+                            baseUrls.get(i), cause.getMessage());
+                }
+            }
+        }
+        if (endpoints.isEmpty()) {
+            throw firstFailure;
+        }
+
+        ReplicaEndpoint primary = endpoints.get(0);
+        int transports = endpoints.size();
+        return new ClientRegistration(connection, primary.asyncClient(), null, primary.transportDescription(),
+                () -> {
+                    for (int i = 0; i < transports; i++) {
+                        sharedHttpClient.release();
+                    }
+                }, List.copyOf(endpoints.subList(1, endpoints.size())));
+    }
+
+    private HttpClientStreamableHttpTransport buildTransport(String baseUrl, McpServerConnection connection) {
         String endpoint = StringUtils.hasText(connection.getEndpoint()) ? connection.getEndpoint() : "/api/mcp";
 
         HttpClientStreamableHttpTransport.Builder builder = HttpClientStreamableHttpTransport
                 .builder(baseUrl)
                 .endpoint(endpoint)
-                .clientBuilder(HttpClient.newBuilder())
+                .clientBuilder(sharedHttpClient.transportClientBuilder())
                 .objectMapper(objectMapper);
 
         asyncHttpCustomizerProvider.ifUnique(builder::asyncHttpRequestCustomizer);
@@ -337,7 +770,14 @@ public class DynamicMcpClientManager {
 
         McpAsyncClient client = spec.build();
         if (initialize) {
-            client.initialize().block(commonProperties.getRequestTimeout());
+            try {
+                client.initialize().block(commonProperties.getRequestTimeout());
+            }
+            catch (RuntimeException ex) {
+                // Nothing else holds this client, so close its open streams before giving up
+                client.close();
+                throw ex;
+            }
         }
         return client;
     }
@@ -358,7 +798,13 @@ public class DynamicMcpClientManager {
 
         McpSyncClient client = spec.build();
         if (initialize) {
-            client.initialize();
+            try {
+                client.initialize();
+            }
+            catch (RuntimeException ex) {
+                client.close();
+                throw ex;
+            }
         }
         return client;
     }
@@ -368,33 +814,74 @@ public class DynamicMcpClientManager {
     }
 
     private String transportDescription(McpServerConnection connection) {
-        return "%s%s".formatted(connection.getBaseUrl(), connection.getEndpoint());
+        return transportDescription(connection.getBaseUrl(), connection);
     }
 
-    public record RegistrationResult(boolean success, String message) {
+    private String transportDescription(String baseUrl, McpServerConnection connection) {
+        return "%s%s".formatted(baseUrl, connection.getEndpoint());
+    }
+
+    public record RegistrationResult(Status status, String message) {
+
+        public enum Status {
+            CONNECTED,
+            DISABLED,
+            SUPERSEDED,
+            RETRY_SCHEDULED
+        }
+
         public static RegistrationResult connected(String name, String location) {
-            return new RegistrationResult(true, "Connected to %s via %s".formatted(name, location));
+            return new RegistrationResult(Status.CONNECTED, "Connected to %s via %s".formatted(name, location));
         }
 
         public static RegistrationResult disabled(String name) {
-            return new RegistrationResult(false, "Connection '%s' disabled".formatted(name));
+            return new RegistrationResult(Status.DISABLED, "Connection '%s' disabled".formatted(name));
+        }
+
+        public static RegistrationResult superseded(String name) {
+            return new RegistrationResult(Status.SUPERSEDED,
+                    "Registration of '%s' superseded by a newer one".formatted(name));
         }
 
         public static RegistrationResult retryScheduled(String name, String error) {
-            return new RegistrationResult(false, "Connection '%s' failed, retry scheduled: %s".formatted(name, error));
+            return new RegistrationResult(Status.RETRY_SCHEDULED,
+                    "Connection '%s' failed, retry scheduled: %s".formatted(name, error));
+        }
+
+        public boolean success() {
+            return status == Status.CONNECTED;
         }
     }
 
     public record ClientRegistration(McpServerConnection source, McpAsyncClient asyncClient, McpSyncClient syncClient,
-            String transportDescription) implements AutoCloseable {
+            String transportDescription, Runnable releaseTransport, List<ReplicaEndpoint> replicas)
+            implements AutoCloseable {
+
+        /**
+         * Every reachable instance of the server, the primary client first.
+         */
+        public List<ReplicaEndpoint> endpoints() {
+            List<ReplicaEndpoint> endpoints = new ArrayList<>();
+            if (asyncClient != null) {
+                endpoints.add(new ReplicaEndpoint(transportDescription, asyncClient));
+            }
+            endpoints.addAll(replicas);
+            return endpoints;
+        }
 
         @Override
         public void close() {
-            if (asyncClient != null) {
-                asyncClient.close();
+            try {
+                if (asyncClient != null) {
+                    asyncClient.close();
+                }
+                if (syncClient != null) {
+                    syncClient.close();
+                }
+                replicas.forEach(replica -> replica.asyncClient().close());
             }
-            if (syncClient != null) {
-                syncClient.close();
+            finally {
+                releaseTransport.run();
             }
         }
 
@@ -403,6 +890,9 @@ public class DynamicMcpClientManager {
         }
     }
 
+    public record ReplicaEndpoint(String transportDescription, McpAsyncClient asyncClient) {
+    }
+
     private static class RetryState {
         private static final int DEFAULT_MAX_RETRIES = 5;
         private static final Duration INITIAL_DELAY = Duration.ofSeconds(5);
@@ -4,16 +4,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import org.cloudfoundry.samples.music.domain.McpServerConnection;
+import org.cloudfoundry.samples.music.domain.McpToolDefinition;
 import org.cloudfoundry.samples.music.repositories.jpa.McpServerConnectionRepository;
 import org.cloudfoundry.samples.music.config.CloudFoundryMcpConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -21,30 +32,66 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 
 @Service
 @Profile("mcp")
-@Transactional
 public class McpServerConnectionService {
 
     private static final Logger logger = LoggerFactory.getLogger(McpServerConnectionService.class);
 
     private final McpServerConnectionRepository repository;
     private final DynamicMcpClientManager clientManager;
+    private final MeterRegistry meterRegistry;
+    // Transactions only cover the database writes; MCP handshakes run outside of them so a
+    // slow server never holds a pooled JDBC connection
+    private final TransactionTemplate transactionTemplate;
+    private final int startupParallelism;
+
+    // Listing served from memory; any write or registration change bumps the version
+    private final AtomicLong listingVersion = new AtomicLong();
+    private volatile ConnectionListing listing;
 
     public McpServerConnectionService(McpServerConnectionRepository repository,
-            DynamicMcpClientManager clientManager) {
+            DynamicMcpClientManager clientManager, MeterRegistry meterRegistry,
+            PlatformTransactionManager transactionManager,
+            @Value("${spring-metal.mcp.startup-parallelism:4}") int startupParallelism) {
         this.repository = repository;
         this.clientManager = clientManager;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.startupParallelism = Math.max(1, startupParallelism);
     }
 
+    /**
+     * Persisted and CF-bound connections. The list is kept in memory until a connection is
+     * written or a registration changes, so polling it costs no queries; callers must not
+     * modify the returned connections.
+     */
     public List<McpServerConnection> listConnections() {
+        long version = listingVersion.get();
+        ConnectionListing current = listing;
+        if (current != null && current.version() == version) {
+            return current.connections();
+        }
+
         List<McpServerConnection> connections = new ArrayList<>();
 
-        // Add database-persisted connections
-        connections.addAll(repository.findAll());
+        // Add database-persisted connections, with their headers, in one query
+        connections.addAll(repository.findAllWithSettings());
 
         // Add CF-bound ephemeral connections
         connections.addAll(CloudFoundryMcpConfiguration.getCfBoundConnections().values());
 
-        return connections;
+        // Stored under the version read up front, so a change made meanwhile forces a reload
+        ConnectionListing loaded = new ConnectionListing(version, List.copyOf(connections));
+        listing = loaded;
+        return loaded.connections();
+    }
+
+    @EventListener
+    public void onMcpToolsChanged(McpToolsChangedEvent event) {
+        connectionsChanged();
+    }
+
+    private void connectionsChanged() {
+        listingVersion.incrementAndGet();
     }
 
     public McpServerConnection getConnection(UUID id) {
@@ -63,16 +110,13 @@ public class McpServerConnectionService {
         return CloudFoundryMcpConfiguration.getCfBoundConnections().get(name);
     }
 
-    public McpServerConnection createConnection(String name, String baseUrl, String endpoint, Boolean enabled,
-            Map<String, String> headers) {
+    public McpServerConnection createConnection(String name, String baseUrl, List<String> replicaBaseUrls,
+            String endpoint, Boolean enabled,
+            Map<String, String> headers, Boolean toolCacheEnabled, Integer toolCacheTtlSeconds,
+            Map<String, Integer> toolCacheTtls) {
         Assert.hasText(name, "Connection name must not be empty");
         Assert.hasText(baseUrl, "Connection baseUrl must not be empty");
 
-        // Check if name exists in database
-        repository.findByNameIgnoreCase(name).ifPresent(existing -> {
-            throw new IllegalArgumentException("Connection name '%s' already exists".formatted(name));
-        });
-
         // Check if name exists in CF-bound connections
         if (CloudFoundryMcpConfiguration.getCfBoundConnections().containsKey(name)) {
             throw new IllegalArgumentException("Connection name '%s' already exists as CF-bound service".formatted(name));
@@ -81,19 +125,43 @@ public class McpServerConnectionService {
         McpServerConnection connection = new McpServerConnection();
         connection.setName(name.trim());
         connection.setBaseUrl(baseUrl.trim());
+        connection.setReplicaBaseUrls(normalizeReplicaBaseUrls(replicaBaseUrls, connection.getBaseUrl()));
         connection.setEndpoint(normalizeEndpoint(endpoint));
         connection.setEnabled(enabled == null || enabled);
         connection.setDefaultHeaders(headers);
+        connection.setToolCacheEnabled(toolCacheEnabled);
+        connection.setToolCacheTtlSeconds(validateToolCacheTtl(toolCacheTtlSeconds));
+        connection.setToolCacheTtls(validateToolCacheTtls(toolCacheTtls));
 
-        repository.save(connection);
-        updateRuntimeRegistration(connection);
-        return repository.save(connection);
+        McpServerConnection saved = transactionTemplate.execute(status -> {
+            // Check if name exists in database
+            repository.findByNameIgnoreCase(name).ifPresent(existing -> {
+                throw new IllegalArgumentException("Connection name '%s' already exists".formatted(name));
+            });
+            return repository.save(connection);
+        });
+        connectionsChanged();
+        return registerAndRecord(saved);
     }
 
-    public McpServerConnection updateConnection(UUID id, String name, String baseUrl, String endpoint, Boolean enabled,
-            Map<String, String> headers) {
-        McpServerConnection connection = getConnection(id);
+    public McpServerConnection updateConnection(UUID id, String name, String baseUrl, List<String> replicaBaseUrls,
+            String endpoint, Boolean enabled,
+            Map<String, String> headers, Boolean toolCacheEnabled, Integer toolCacheTtlSeconds,
+            Map<String, Integer> toolCacheTtls) {
+        McpServerConnection saved = transactionTemplate.execute(status -> {
+            McpServerConnection connection = repository.findWithSettingsById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("Connection with id %s not found".formatted(id)));
+            applyChanges(connection, id, name, baseUrl, replicaBaseUrls, endpoint, enabled, headers,
+                    toolCacheEnabled, toolCacheTtlSeconds, toolCacheTtls);
+            return repository.save(connection);
+        });
+        connectionsChanged();
+        return registerAndRecord(saved);
+    }
 
+    private void applyChanges(McpServerConnection connection, UUID id, String name, String baseUrl,
+            List<String> replicaBaseUrls, String endpoint, Boolean enabled, Map<String, String> headers,
+            Boolean toolCacheEnabled, Integer toolCacheTtlSeconds, Map<String, Integer> toolCacheTtls) {
         if (StringUtils.hasText(name) && !name.equalsIgnoreCase(connection.getName())) {
             repository.findByNameIgnoreCase(name).ifPresent(existing -> {
                 if (!existing.getId().equals(id)) {
@@ -107,6 +175,10 @@ public class McpServerConnectionService {
             connection.setBaseUrl(baseUrl.trim());
         }
 
+        if (replicaBaseUrls != null) {
+            connection.setReplicaBaseUrls(normalizeReplicaBaseUrls(replicaBaseUrls, connection.getBaseUrl()));
+        }
+
         if (endpoint != null) {
             connection.setEndpoint(normalizeEndpoint(endpoint));
         }
@@ -119,30 +191,53 @@ public class McpServerConnectionService {
             connection.setEnabled(enabled);
         }
 
-        updateRuntimeRegistration(connection);
-        return repository.save(connection);
+        if (toolCacheEnabled != null) {
+            connection.setToolCacheEnabled(toolCacheEnabled);
+        }
+
+        if (toolCacheTtlSeconds != null) {
+            connection.setToolCacheTtlSeconds(validateToolCacheTtl(toolCacheTtlSeconds));
+        }
+
+        if (toolCacheTtls != null) {
+            connection.setToolCacheTtls(validateToolCacheTtls(toolCacheTtls));
+        }
     }
 
     public McpServerConnection updateConnection(McpServerConnection connection) {
-        updateRuntimeRegistration(connection);
-        return repository.save(connection);
+        return registerAndRecord(repository.save(connection));
     }
 
     public McpServerConnection saveConnection(McpServerConnection connection) {
         if (connection.getEndpoint() != null) {
             connection.setEndpoint(normalizeEndpoint(connection.getEndpoint()));
         }
-        McpServerConnection savedConnection = repository.save(connection);
-        updateRuntimeRegistration(savedConnection);
-        return savedConnection;
+        return registerAndRecord(repository.save(connection));
     }
 
     public void deleteConnection(UUID id) {
-        McpServerConnection connection = getConnection(id);
-        repository.delete(connection);
+        transactionTemplate.executeWithoutResult(status -> repository.delete(getConnection(id)));
+        connectionsChanged();
         clientManager.deregister(id);
     }
 
+    /**
+     * Connect to the saved connection outside any transaction, then store the outcome in a
+     * short follow-up write.
+     */
+    private McpServerConnection registerAndRecord(McpServerConnection connection) {
+        updateRuntimeRegistration(connection);
+        McpServerConnection recorded = transactionTemplate.execute(status -> repository.findWithSettingsById(connection.getId())
+                .map(current -> {
+                    // Only the registration outcome is written, so edits made while connecting survive
+                    current.copyRegistrationState(connection);
+                    return repository.save(current);
+                })
+                .orElse(connection));
+        connectionsChanged();
+        return recorded;
+    }
+
     public DynamicMcpClientManager.RegistrationResult testConnection(String name, String baseUrl, String endpoint,
             Map<String, String> headers) {
         Assert.hasText(name, "Connection name must not be empty");
@@ -160,49 +255,112 @@ public class McpServerConnectionService {
     }
 
     public void disableConnection(UUID id) {
-        McpServerConnection connection = getConnection(id);
-        connection.setEnabled(false);
-        connection.markDisabled();
-        repository.save(connection);
+        transactionTemplate.executeWithoutResult(status -> {
+            McpServerConnection connection = getConnection(id);
+            connection.setEnabled(false);
+            connection.markDisabled();
+            repository.save(connection);
+        });
+        connectionsChanged();
         clientManager.deregister(id);
     }
 
     @EventListener(ApplicationReadyEvent.class)
     public void initializeExistingConnections() {
-        repository.findAll().forEach(connection -> {
+        long startupStart = System.nanoTime();
+        List<McpServerConnection> connections = repository.findAllWithSettings();
+        List<CompletableFuture<Void>> registrations = new ArrayList<>();
+        // Tools stored from the previous run are served while the servers reconnect
+        clientManager.expectRegistrations(connections.stream()
+                .filter(McpServerConnection::isEnabled)
+                .filter(connection -> !CloudFoundryMcpConfiguration.getCfBoundConnections().containsKey(connection.getName()))
+                .map(McpServerConnection::getId)
+                .toList());
+        // Bounds how many servers are connecting at once; each may block up to the request timeout
+        Semaphore permits = new Semaphore(startupParallelism);
+
+        for (McpServerConnection connection : connections) {
             // Skip database connections if there's a CF-bound connection with the same name
             if (CloudFoundryMcpConfiguration.getCfBoundConnections().containsKey(connection.getName())) {
                 logger.info("Skipping database connection '{}' as CF-bound connection exists with same name", connection.getName());
-                return;
+                continue;
             }
 
-            if (connection.isEnabled()) {
-                try {
-                    clientManager.register(connection);
-                    connection.markSuccess();
+            if (!connection.isEnabled()) {
+                connection.markDisabled();
+                continue;
+            }
 
-                    // Update tool information after successful registration
-                    updateToolInformation(connection);
-                }
-                catch (Exception ex) {
-                    connection.markFailure(ex.getMessage());
-                }
+            permits.acquireUninterruptibly();
+            long connectStart = System.nanoTime();
+            CompletableFuture<Void> registration = clientManager.registerAsync(connection)
+                    .handle((result, ex) -> {
+                        String outcome;
+                        if (ex == null) {
+                            outcome = recordRegistration(connection, result);
+                        }
+                        else {
+                            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                            connection.markFailure(cause.getMessage());
+                            outcome = "error";
+                        }
+                        long elapsedNanos = System.nanoTime() - connectStart;
+                        connectTimer(outcome).record(elapsedNanos, TimeUnit.NANOSECONDS);
+                        logger.info("⏱️  MCP connection '{}' {} in {} ms", connection.getName(),
+                                "success".equals(outcome) ? "ready" : outcome, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+                        return (Void) null;
+                    })
+                    .whenComplete((ignored, ex) -> permits.release());
+            registrations.add(registration);
+        }
+
+        CompletableFuture.allOf(registrations.toArray(CompletableFuture[]::new)).join();
+
+        // One batch for every status change instead of a save per connection
+        repository.saveAll(connections);
+        connectionsChanged();
+        logger.info("🚀 Initialized {} MCP connections in {} ms (parallelism {})", registrations.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startupStart), startupParallelism);
+    }
+
+    private Timer connectTimer(String outcome) {
+        return Timer.builder("spring.metal.mcp.connect")
+                .description("Time to register an MCP connection at startup")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Apply a registration result to the connection and return the outcome to record. Tool
+     * information is only refreshed when a client was actually registered, so a connection
+     * that is still retrying keeps the tools stored from its last successful run.
+     */
+    private String recordRegistration(McpServerConnection connection, DynamicMcpClientManager.RegistrationResult result) {
+        switch (result.status()) {
+            case CONNECTED -> {
+                connection.markSuccess();
+                updateToolInformation(connection);
+                return "success";
+            }
+            case RETRY_SCHEDULED -> {
+                connection.markFailure(result.message());
+                return "retry";
             }
-            else {
+            case DISABLED -> {
                 connection.markDisabled();
+                return "disabled";
             }
-            repository.save(connection);
-        });
+            default -> {
+                // A newer registration of the same connection records its own outcome
+                return "superseded";
+            }
+        }
     }
 
     private void updateRuntimeRegistration(McpServerConnection connection) {
         if (connection.isEnabled()) {
             try {
-                clientManager.register(connection);
-                connection.markSuccess();
-
-                // Update tool information after successful registration
-                updateToolInformation(connection);
+                recordRegistration(connection, clientManager.register(connection));
             }
             catch (Exception ex) {
                 connection.markFailure(ex.getMessage());
@@ -216,6 +374,15 @@ public class McpServerConnectionService {
 
     private void updateToolInformation(McpServerConnection connection) {
         try {
+            // Full definitions let the next startup offer these tools before the server reconnects
+            List<McpToolDefinition> definitions = clientManager.getToolDefinitionsForClient(connection.getId());
+            if (!definitions.isEmpty()) {
+                if (connection.updateToolDefinitions(definitions)) {
+                    logger.info("Stored {} tool definitions for MCP connection '{}'", definitions.size(), connection.getName());
+                }
+                return;
+            }
+
             List<String> availableTools = clientManager.getAvailableToolsForClient(connection.getId());
             connection.updateToolInformation(availableTools);
         } catch (Exception e) {
@@ -225,6 +392,37 @@ public class McpServerConnectionService {
         }
     }
 
+    private List<String> normalizeReplicaBaseUrls(List<String> replicaBaseUrls, String baseUrl) {
+        if (replicaBaseUrls == null) {
+            return List.of();
+        }
+        return replicaBaseUrls.stream()
+                .filter(StringUtils::hasText)
+                .map(String::trim)
+                .filter(url -> !url.equalsIgnoreCase(baseUrl))
+                .distinct()
+                .toList();
+    }
+
+    private Integer validateToolCacheTtl(Integer ttlSeconds) {
+        if (ttlSeconds != null && ttlSeconds < 0) {
+            throw new IllegalArgumentException("Tool cache TTL must not be negative");
+        }
+        return ttlSeconds;
+    }
+
+    private Map<String, Integer> validateToolCacheTtls(Map<String, Integer> toolCacheTtls) {
+        if (toolCacheTtls == null) {
+            return null;
+        }
+        toolCacheTtls.forEach((tool, ttlSeconds) -> {
+            Assert.hasText(tool, "Tool cache entries need a tool name");
+            Assert.notNull(ttlSeconds, "Tool cache TTL for '%s' must not be empty".formatted(tool));
+            validateToolCacheTtl(ttlSeconds);
+        });
+        return toolCacheTtls;
+    }
+
     private String normalizeEndpoint(String endpoint) {
         if (!StringUtils.hasText(endpoint)) {
             return "/api/mcp";
@@ -235,5 +433,8 @@ public class McpServerConnectionService {
         }
         return trimmed;
     }
+
+    private record ConnectionListing(long version, List<McpServerConnection> connections) {
+    }
 }
 
@@ -0,0 +1,12 @@
+package org.cloudfoundry.samples.music.service;
+
+import java.util.UUID;
+
+/**
+ * Published by {@link DynamicMcpClientManager} when a connection is registered or removed,
+ * or when an MCP server announces {@code notifications/tools/list_changed}, meaning the set
+ * of MCP tools offered to the model may have changed. The connection id is {@code null}
+ * for server notifications.
+ */
+public record McpToolsChangedEvent(UUID connectionId) {
+}
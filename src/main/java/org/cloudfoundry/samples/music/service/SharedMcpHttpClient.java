@@ -0,0 +1,158 @@
+package org.cloudfoundry.samples.music.service;
+
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.InetAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cloudfoundry.samples.music.service.support.MeteredHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * One JDK {@link HttpClient} shared by every MCP transport, so connections are pooled and
+ * reused across servers, retries and test probes instead of each transport starting its own
+ * selector thread and pool that is only reclaimed by the garbage collector.
+ *
+ * <p>
+ * Transports get a builder that returns the shared client and drops their own settings
+ * (timeouts, version, proxy, SSL); each dropped setting is logged at debug. How long idle
+ * connections are kept is a JVM-wide JDK setting, {@code -Djdk.httpclient.keepalive.timeout},
+ * passed through {@code JAVA_OPTS} in the manifest.
+ */
+@Component
+@Profile("mcp")
+public class SharedMcpHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedMcpHttpClient.class);
+
+    static final String METRIC_PREFIX = "spring.metal.mcp.http";
+
+    // JVM flag read once by the JDK when its connection pool is first used
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger openTransports = new AtomicInteger();
+    private final HttpClient httpClient;
+
+    public SharedMcpHttpClient(MeterRegistry meterRegistry,
+            @Value("${spring-metal.mcp.http.connect-timeout:10s}") Duration connectTimeout,
+            @Value("${spring-metal.mcp.http.version:HTTP_2}") HttpClient.Version version) {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(version)
+                .executor(executor)
+                .build();
+        this.httpClient = new MeteredHttpClient(client, meterRegistry, METRIC_PREFIX);
+        Gauge.builder(METRIC_PREFIX + ".transports", openTransports, AtomicInteger::get)
+                .description("MCP transports currently using the shared HTTP client")
+                .register(meterRegistry);
+        logger.info("🌐 Shared MCP HTTP client ready ({}, connect timeout {}s, keep-alive {}s)", version,
+                connectTimeout.toSeconds(), System.getProperty(KEEP_ALIVE_PROPERTY, "1200"));
+    }
+
+    /**
+     * Builder to hand to a transport. Its settings are fixed by this component, so the
+     * transport's own configuration calls are ignored (and logged at debug) and
+     * {@code build()} returns the shared client. Call {@link #release()} once the transport
+     * is closed.
+     */
+    public HttpClient.Builder transportClientBuilder() {
+        openTransports.incrementAndGet();
+        return new SharedClientBuilder(httpClient);
+    }
+
+    public void release() {
+        openTransports.updateAndGet(count -> Math.max(0, count - 1));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private record SharedClientBuilder(HttpClient client) implements HttpClient.Builder {
+
+        @Override
+        public HttpClient.Builder cookieHandler(CookieHandler cookieHandler) {
+            return ignored("cookieHandler");
+        }
+
+        @Override
+        public HttpClient.Builder connectTimeout(Duration duration) {
+            return ignored("connectTimeout");
+        }
+
+        @Override
+        public HttpClient.Builder sslContext(SSLContext sslContext) {
+            return ignored("sslContext");
+        }
+
+        @Override
+        public HttpClient.Builder sslParameters(SSLParameters sslParameters) {
+            return ignored("sslParameters");
+        }
+
+        @Override
+        public HttpClient.Builder executor(Executor executor) {
+            return ignored("executor");
+        }
+
+        @Override
+        public HttpClient.Builder followRedirects(HttpClient.Redirect policy) {
+            return ignored("followRedirects");
+        }
+
+        @Override
+        public HttpClient.Builder version(HttpClient.Version version) {
+            return ignored("version");
+        }
+
+        @Override
+        public HttpClient.Builder priority(int priority) {
+            return ignored("priority");
+        }
+
+        @Override
+        public HttpClient.Builder proxy(ProxySelector proxySelector) {
+            return ignored("proxy");
+        }
+
+        @Override
+        public HttpClient.Builder authenticator(Authenticator authenticator) {
+            return ignored("authenticator");
+        }
+
+        @Override
+        public HttpClient.Builder localAddress(InetAddress localAddr) {
+            return ignored("localAddress");
+        }
+
+        @Override
+        public HttpClient build() {
+            return client;
+        }
+
+        private HttpClient.Builder ignored(String setting) {
+            logger.debug("🌐 Ignoring transport HTTP client setting '{}', the shared MCP client's applies", setting);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.cloudfoundry.samples.music.service.support;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Circuit breaker for one MCP connection, driven by periodic health checks and by the
+ * outcome of tool calls. Enough consecutive failed checks, or enough consecutive tool calls
+ * that failed in transport or timed out, open the circuit; once the open period has passed
+ * the next check is a half-open probe that either closes the circuit again or keeps it open.
+ * Successful pings do not reset the tool call failures, so a server that answers pings but
+ * fails every call still trips.
+ */
+public class ConnectionCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int consecutiveCallFailures;
+    private long openedAt;
+    private Instant lastCheckedAt;
+    private String lastError;
+
+    public ConnectionCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Whether a health check should run now. Moves an open circuit whose wait has elapsed
+     * to half-open so the check becomes its probe.
+     */
+    public synchronized boolean shouldCheck() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        return state != State.OPEN;
+    }
+
+    /**
+     * Record a successful check; returns true when this closed the circuit.
+     */
+    public synchronized boolean recordSuccess() {
+        lastCheckedAt = Instant.now();
+        lastError = null;
+        consecutiveFailures = 0;
+        boolean wasOpen = state != State.CLOSED;
+        state = State.CLOSED;
+        return wasOpen;
+    }
+
+    /**
+     * Record a failed check; returns true when this opened the circuit.
+     */
+    public synchronized boolean recordFailure(String error) {
+        lastCheckedAt = Instant.now();
+        lastError = error;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            boolean wasClosed = state == State.CLOSED;
+            open();
+            return wasClosed;
+        }
+        return false;
+    }
+
+    /**
+     * Record a tool call that failed in transport or timed out; returns true when this
+     * opened the circuit.
+     */
+    public synchronized boolean recordCallFailure(String error) {
+        lastError = error;
+        if (state != State.CLOSED) {
+            return false;
+        }
+        if (++consecutiveCallFailures >= failureThreshold) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void recordCallSuccess() {
+        consecutiveCallFailures = 0;
+    }
+
+    // A circuit closed by a probe needs a fresh run of failed calls to open again
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        consecutiveCallFailures = 0;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Whether the connection's tools may be offered to the model.
+     */
+    public synchronized boolean allowsTraffic() {
+        return state == State.CLOSED;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(state, consecutiveFailures, consecutiveCallFailures, lastCheckedAt, lastError);
+    }
+
+    public record Snapshot(State state, int consecutiveFailures, int consecutiveCallFailures, Instant lastCheckedAt,
+            String lastError) {
+    }
+}
@@ -0,0 +1,106 @@
+package org.cloudfoundry.samples.music.service.support;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Small thread-safe LRU cache whose entries also expire after a time-to-live, either the
+ * cache-wide default or one given per entry. Expired entries are dropped lazily on access
+ * and when the cache is written to.
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long evictionCount;
+
+    public ExpiringLruCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            evictionCount++;
+            return null;
+        }
+        return entry.value();
+    }
+
+    public void put(K key, V value) {
+        putEntry(key, value, ttlNanos);
+    }
+
+    public void put(K key, V value, Duration ttl) {
+        putEntry(key, value, ttl.toNanos());
+    }
+
+    private synchronized void putEntry(K key, V value, long entryTtlNanos) {
+        long now = System.nanoTime();
+        entries.put(key, new Entry<>(value, now + entryTtlNanos));
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            if (entries.size() > maxSize || eldest.getValue().isExpired(now)) {
+                iterator.remove();
+                evictionCount++;
+            }
+            else {
+                // Access order means the remaining entries are younger in use, stop scanning
+                break;
+            }
+        }
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void removeIf(Predicate<V> predicate) {
+        entries.values().removeIf(entry -> predicate.test(entry.value()));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Snapshot of the live values, most recently used last.
+     */
+    public synchronized Map<K, V> snapshot() {
+        long now = System.nanoTime();
+        Map<K, V> live = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> {
+            if (!entry.isExpired(now)) {
+                live.put(key, entry.value());
+            }
+        });
+        return live;
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.cloudfoundry.samples.music.service.support;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Delegating {@link HttpClient} that records in-flight requests and request latency tagged
+ * with the negotiated HTTP version. The JDK client keeps its connection pool private, so
+ * these are the closest observable signals of how the shared pool is being used.
+ */
+public class MeteredHttpClient extends HttpClient {
+
+    private final HttpClient delegate;
+    private final MeterRegistry meterRegistry;
+    private final String metricPrefix;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public MeteredHttpClient(HttpClient delegate, MeterRegistry meterRegistry, String metricPrefix) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.metricPrefix = metricPrefix;
+        Gauge.builder(metricPrefix + ".requests.active", inFlight, AtomicInteger::get)
+                .description("HTTP requests waiting for response headers on the shared client")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        HttpResponse<T> response = null;
+        try {
+            response = delegate.send(request, responseBodyHandler);
+            return response;
+        }
+        finally {
+            inFlight.decrementAndGet();
+            record(response, start);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+            HttpResponse.BodyHandler<T> responseBodyHandler) {
+        return track(delegate.sendAsync(request, responseBodyHandler));
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+            HttpResponse.BodyHandler<T> responseBodyHandler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        return track(delegate.sendAsync(request, responseBodyHandler, pushPromiseHandler));
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> track(CompletableFuture<HttpResponse<T>> response) {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        return response.whenComplete((result, error) -> {
+            inFlight.decrementAndGet();
+            record(result, start);
+        });
+    }
+
+    private void record(HttpResponse<?> response, long start) {
+        Timer.builder(metricPrefix + ".requests")
+                .description("Time until response headers arrive on the shared HTTP client")
+                .tag("version", response != null ? response.version().name() : "none")
+                .tag("outcome", response == null ? "error" : response.statusCode() < 400 ? "success" : "http-error")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+
+    @Override
+    public WebSocket.Builder newWebSocketBuilder() {
+        return delegate.newWebSocketBuilder();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public void shutdownNow() {
+        delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean awaitTermination(Duration duration) throws InterruptedException {
+        return delegate.awaitTermination(duration);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+}
@@ -1,8 +1,13 @@
 package org.cloudfoundry.samples.music.web;
 
+import java.io.InputStream;
 import java.util.*;
+import java.util.regex.Pattern;
 
+import org.cloudfoundry.samples.music.config.ai.AlbumVectorDocuments;
+import org.cloudfoundry.samples.music.config.ai.BulkAlbumIngestion;
 import org.cloudfoundry.samples.music.config.ai.MessageRetriever;
+import org.cloudfoundry.samples.music.config.ai.VectorReindexJob;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.cloudfoundry.samples.music.domain.Album;
 import org.cloudfoundry.samples.music.domain.MessageRequest;
@@ -10,6 +15,7 @@ import org.cloudfoundry.samples.music.domain.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingRequest;
@@ -19,17 +25,26 @@ import org.cloudfoundry.samples.music.service.McpServerConnectionService;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 
 @RestController
 @Profile("llm")  // Only activate when LLM profile is active
 public class AIController {
     private static final Logger logger = LoggerFactory.getLogger(AIController.class);
+    private static final Pattern CONVERSATION_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
     private MessageRetriever messageRetriever;
     private VectorStore vectorStore;
     private EmbeddingModel embeddingModel;
     private final McpServerConnectionService connectionService;
+    private final ChatMemory chatMemory;
+    private final BulkAlbumIngestion bulkAlbumIngestion;
+    private final VectorReindexJob vectorReindexJob;
 
     @Autowired(required = false)
     private ToolCallbackProvider toolCallbackProvider;
@@ -44,11 +59,14 @@ public class AIController {
     }
 
     @Autowired
-    public AIController(ObjectProvider<VectorStore> vectorStoreProvider, ObjectProvider<MessageRetriever> messageRetrieverProvider, ObjectProvider<EmbeddingModel> embeddingModelProvider, ObjectProvider<McpServerConnectionService> connectionServiceProvider) {
+    public AIController(ObjectProvider<VectorStore> vectorStoreProvider, ObjectProvider<MessageRetriever> messageRetrieverProvider, ObjectProvider<EmbeddingModel> embeddingModelProvider, ObjectProvider<McpServerConnectionService> connectionServiceProvider, ObjectProvider<ChatMemory> chatMemoryProvider, ObjectProvider<BulkAlbumIngestion> bulkAlbumIngestionProvider, ObjectProvider<VectorReindexJob> vectorReindexJobProvider) {
         this.messageRetriever = messageRetrieverProvider.getIfAvailable();
         this.vectorStore = vectorStoreProvider.getIfAvailable();
         this.embeddingModel = embeddingModelProvider.getIfAvailable();
         this.connectionService = connectionServiceProvider.getIfAvailable();
+        this.chatMemory = chatMemoryProvider.getIfAvailable();
+        this.bulkAlbumIngestion = bulkAlbumIngestionProvider.getIfAvailable();
+        this.vectorReindexJob = vectorReindexJobProvider.getIfAvailable();
     }
     
     @RequestMapping(value = "/ai/rag", method = RequestMethod.POST)
@@ -61,9 +79,12 @@ public class AIController {
         logger.info("Getting Messages " + messages);
 
         String query = messages[messages.length - 1].getText();
-        String result = messageRetriever.retrieve(query);
-
-        return Map.of("text",result);
+        try {
+            String result = messageRetriever.retrieve(query);
+            return Map.of("text",result);
+        } catch (Exception e) {
+            return Map.of("text", "I'm sorry, I encountered an error while processing your question: " + e.getMessage());
+        }
     }
 
     @RequestMapping(value = "/ai/chat", method = RequestMethod.POST)
@@ -77,30 +98,15 @@ public class AIController {
             logger.info("Request keys: {}", requestBody.keySet());
             logger.debug("Full chat request body: {}", requestBody);
 
-            // Extract the message from the deep-chat format
-            String message;
-            if (requestBody.containsKey("text")) {
-                message = (String) requestBody.get("text");
-            } else if (requestBody.containsKey("message")) {
-                message = (String) requestBody.get("message");
-            } else {
-                message = requestBody.toString();
-            }
+            String message = extractMessage(requestBody);
 
             logger.info("💬 PROCESSING MESSAGE: \"{}\"", message);
 
-            // Check for conversation context in request
-            boolean hasConversationContext = requestBody.containsKey("conversationContext");
-            logger.info("🔍 CONVERSATION CONTEXT CHECK: Request has conversationContext = {}", hasConversationContext);
-
-            if (hasConversationContext) {
-                var rawContext = requestBody.get("conversationContext");
-                logger.debug("Raw conversationContext type: {}", rawContext != null ? rawContext.getClass().getSimpleName() : "null");
-                logger.debug("Raw conversationContext value: {}", rawContext);
-            }
+            String conversationId = extractConversationId(requestBody);
+            logger.info("🔍 CONVERSATION CHECK: conversationId = {}", conversationId);
 
-            // Extract conversation context from the request
-            List<org.springframework.ai.chat.messages.Message> conversationHistory = extractConversationContext(requestBody);
+            // Load history from server-side memory, or from the request for older clients
+            List<org.springframework.ai.chat.messages.Message> conversationHistory = resolveConversationHistory(conversationId, requestBody);
 
             logger.info("📝 CONTEXT EXTRACTION RESULT: Extracted {} messages for chat processing", conversationHistory.size());
 
@@ -120,7 +126,9 @@ public class AIController {
 
             // Use the MessageRetriever to get AI response with RAG and MCP integration
             logger.info("🤖 CALLING MESSAGE RETRIEVER with message=\"{}\" and {} context messages", message, conversationHistory.size());
+            // retrieve() throws on failure, so only real answers reach the conversation memory
             String result = messageRetriever.retrieve(message, conversationHistory);
+            rememberTurn(conversationId, message, result);
 
             logger.info("✅ CHAT RESPONSE GENERATED - Length: {} characters", result.length());
             logger.debug("Response preview: {}", result.length() > 100 ? result.substring(0, 100) + "..." : result);
@@ -134,16 +142,43 @@ public class AIController {
         }
     }
 
+    @RequestMapping(value = "/ai/chat/stream", method = RequestMethod.POST, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> chatStream(@RequestBody Map<String, Object> requestBody) {
+        if (messageRetriever == null) {
+            return Flux.just(textEvent("error", "AI chat features are not available - AI components not configured"));
+        }
+
+        String message = extractMessage(requestBody);
+        String conversationId = extractConversationId(requestBody);
+        List<org.springframework.ai.chat.messages.Message> conversationHistory = resolveConversationHistory(conversationId, requestBody);
+        logger.info("🔄 STREAMING CHAT REQUEST: \"{}\" with {} context messages", message, conversationHistory.size());
+
+        // Tokens are wrapped in JSON so leading whitespace survives SSE framing
+        StringBuilder answer = new StringBuilder();
+        return messageRetriever.stream(message, conversationHistory)
+            .doOnNext(answer::append)
+            .doOnComplete(() -> rememberTurn(conversationId, message, answer.toString()))
+            .map(chunk -> textEvent("token", chunk))
+            .concatWith(Mono.fromSupplier(() -> textEvent("done", "")))
+            .onErrorResume(e -> {
+                logger.error("❌ ERROR STREAMING CHAT RESPONSE", e);
+                return Flux.just(textEvent("error", "I'm sorry, I encountered an error while processing your message: " + e.getMessage()));
+            });
+    }
+
+    private static ServerSentEvent<Map<String, Object>> textEvent(String event, String text) {
+        return ServerSentEvent.<Map<String, Object>>builder(Map.of("text", text)).event(event).build();
+    }
+
     @RequestMapping(value = "/ai/addDoc", method = RequestMethod.POST)
     public String addDoc(@RequestBody Album album) {
         if (vectorStore == null) {
             return "Vector store not available - AI features not configured";
         }
-        String text = generateVectorDoc(album);
-        Document doc = new Document(album.getId(), text, new HashMap<>());
+        Document doc = AlbumVectorDocuments.toDocument(album);
         logger.info("Adding Album " + doc.toString());
         this.vectorStore.add(List.of(doc));
-        return text;
+        return doc.getText();
     }
 
     @RequestMapping(value = "/ai/deleteDoc", method = RequestMethod.POST)
@@ -156,6 +191,73 @@ public class AIController {
         return id;
     }
 
+    // Body is newline-delimited JSON, one album per line, read as a stream
+    @RequestMapping(value = "/ai/bulk", method = RequestMethod.POST,
+            consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public Map<String, Object> bulkIngest(InputStream body) {
+        if (bulkAlbumIngestion == null) {
+            return Map.of(
+                "status", "error",
+                "message", "Vector store not available - AI features not configured"
+            );
+        }
+        try {
+            BulkAlbumIngestion.BulkIngestionReport report = bulkAlbumIngestion.ingest(body);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("status", report.isComplete() ? "success" : "partial");
+            if (report.readError() != null) {
+                response.put("error", report.readError());
+            }
+            response.put("records", report.records());
+            response.put("indexed", report.indexed());
+            response.put("unchanged", report.unchanged());
+            response.put("failed", report.failed());
+            response.put("invalid", report.invalid());
+            response.put("elapsedMillis", report.elapsedMillis());
+            response.put("recordsPerSecond", report.recordsPerSecond());
+            response.put("results", report.results());
+            return response;
+        } catch (Exception e) {
+            logger.error("Bulk ingestion failed", e);
+            return Map.of(
+                "status", "error",
+                "message", e.getMessage()
+            );
+        }
+    }
+
+    // Starts a rebuild of the vector store in the background; chat keeps using the current
+    // vectors until the rebuilt table is swapped in. resume=true keeps a failed run's progress
+    @RequestMapping(value = "/ai/reindex", method = RequestMethod.POST)
+    public Map<String, Object> startReindex(@RequestParam(defaultValue = "false") boolean resume) {
+        if (vectorReindexJob == null || !vectorReindexJob.isAvailable()) {
+            return Map.of(
+                "status", "error",
+                "message", "Re-indexing needs the pgvector store - AI features not configured"
+            );
+        }
+        try {
+            return Map.of("status", "success", "job", vectorReindexJob.start(resume));
+        } catch (Exception e) {
+            logger.error("Could not start the vector re-index", e);
+            return Map.of(
+                "status", "error",
+                "message", e.getMessage()
+            );
+        }
+    }
+
+    @RequestMapping(value = "/ai/reindex", method = RequestMethod.GET)
+    public Map<String, Object> reindexProgress() {
+        if (vectorReindexJob == null || !vectorReindexJob.isAvailable()) {
+            return Map.of(
+                "status", "error",
+                "message", "Re-indexing needs the pgvector store - AI features not configured"
+            );
+        }
+        return Map.of("status", "success", "job", vectorReindexJob.progress());
+    }
+
     @RequestMapping(value = "/ai/test-embedding", method = RequestMethod.GET)
     public Map<String, Object> testEmbedding() {
         try {
@@ -275,6 +377,43 @@ public class AIController {
         }
     }
 
+    private String extractMessage(Map<String, Object> requestBody) {
+        // Extract the message from the deep-chat format
+        if (requestBody.containsKey("text")) {
+            return (String) requestBody.get("text");
+        } else if (requestBody.containsKey("message")) {
+            return (String) requestBody.get("message");
+        }
+        return requestBody.toString();
+    }
+
+    private String extractConversationId(Map<String, Object> requestBody) {
+        Object conversationId = requestBody.get("conversationId");
+        if (conversationId instanceof String id && CONVERSATION_ID_PATTERN.matcher(id).matches()) {
+            return id;
+        }
+        if (conversationId != null) {
+            logger.warn("Ignoring invalid conversationId in chat request");
+        }
+        return null;
+    }
+
+    private List<org.springframework.ai.chat.messages.Message> resolveConversationHistory(String conversationId, Map<String, Object> requestBody) {
+        if (conversationId != null && chatMemory != null) {
+            return chatMemory.get(conversationId);
+        }
+        return extractConversationContext(requestBody);
+    }
+
+    private void rememberTurn(String conversationId, String message, String answer) {
+        if (conversationId == null || chatMemory == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        chatMemory.add(conversationId, List.of(
+            new org.springframework.ai.chat.messages.UserMessage(message),
+            new org.springframework.ai.chat.messages.AssistantMessage(answer)));
+    }
+
     private List<org.springframework.ai.chat.messages.Message> extractConversationContext(Map<String, Object> requestBody) {
         List<org.springframework.ai.chat.messages.Message> context = new ArrayList<>();
 
@@ -481,16 +620,16 @@ public class AIController {
             frontendSteps.add(Map.of(
                 "step", 3,
                 "component", "Context Management",
-                "action", "Add conversationContext array to request",
-                "details", "Last 6 messages from conversation history sent to backend",
-                "storageKey", "spring-metal-conversation-context"
+                "action", "Add conversationId to request",
+                "details", "Only the new message is sent; history is kept server-side per conversation",
+                "storageKey", "spring-metal-conversation-id"
             ));
 
             frontendSteps.add(Map.of(
                 "step", 4,
                 "component", "HTTP Request",
-                "action", "POST to /ai/chat endpoint",
-                "details", "Request body contains 'text' and 'conversationContext' fields"
+                "action", "POST to /ai/chat/stream (SSE) or /ai/chat endpoint",
+                "details", "Request body contains 'text' and 'conversationId' fields"
             ));
 
             frontend.put("description", "Frontend conversation context management and request preparation");
@@ -505,16 +644,16 @@ public class AIController {
                 "step", 1,
                 "component", "AIController.chat()",
                 "action", "Receive HTTP POST request",
-                "details", "Extract message text and conversationContext from request body",
+                "details", "Extract message text and conversationId from request body",
                 "location", "src/main/java/org/cloudfoundry/samples/music/web/AIController.java:65-127"
             ));
 
             backendSteps.add(Map.of(
                 "step", 2,
-                "component", "Context Extraction",
-                "action", "Parse conversation history",
-                "details", "Convert frontend context to Spring AI Message objects (UserMessage/AssistantMessage)",
-                "location", "AIController.extractConversationContext():243-293"
+                "component", "Conversation Memory",
+                "action", "Load conversation history",
+                "details", "ChatMemory (token-capped, idle conversations evicted) returns prior turns; legacy conversationContext arrays are still parsed",
+                "location", "AIController.resolveConversationHistory()"
             ));
 
             backendSteps.add(Map.of(
@@ -529,7 +668,7 @@ public class AIController {
                 "step", 4,
                 "component", "Vector Store (RAG)",
                 "action", "Similarity search for relevant documents",
-                "details", "QuestionAnswerAdvisor searches vector store using similarity threshold 0.3 and topK 5",
+                "details", "Single search on the rewritten query (similarity threshold 0.3, topK 5); results are reused for prompt augmentation",
                 "location", "MessageRetriever:73-78"
             ));
 
@@ -572,8 +711,8 @@ public class AIController {
             Map<String, Object> followUp = new LinkedHashMap<>();
             List<String> followUpProcess = new ArrayList<>();
             followUpProcess.add("User asks follow-up question (e.g., 'What albums have they released?' after asking about Genesis)");
-            followUpProcess.add("Frontend maintains conversation context in localStorage and sessionStorage");
-            followUpProcess.add("Request interceptor automatically includes previous conversation in conversationContext array");
+            followUpProcess.add("Frontend keeps a conversationId in localStorage and sends it with every message");
+            followUpProcess.add("Backend loads the previous turns for that conversationId from ChatMemory and stores the new turn afterwards");
             followUpProcess.add("Backend receives BOTH the follow-up question AND the conversation history");
             followUpProcess.add("Spring AI ChatClient processes the full conversation context");
             followUpProcess.add("AI model understands 'they' refers to 'Genesis' from previous context");
@@ -607,9 +746,9 @@ public class AIController {
                 "responsibility", "Vector search, context assembly, AI model interaction"
             ));
 
-            components.put("QuestionAnswerAdvisor", Map.of(
+            components.put("RetrievedDocumentsAdvisor", Map.of(
                 "role", "Spring AI RAG component",
-                "responsibility", "Document retrieval and context injection"
+                "responsibility", "Context injection of the already retrieved documents"
             ));
 
             components.put("ToolCallbackProvider", Map.of(
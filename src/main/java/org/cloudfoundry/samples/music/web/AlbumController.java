@@ -1,10 +1,12 @@
 package org.cloudfoundry.samples.music.web;
 
 import org.cloudfoundry.samples.music.domain.Album;
+import org.cloudfoundry.samples.music.domain.AlbumChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,10 +17,12 @@ import jakarta.validation.Valid;
 public class AlbumController {
     private static final Logger logger = LoggerFactory.getLogger(AlbumController.class);
     private CrudRepository<Album, String> repository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public AlbumController(CrudRepository<Album, String> repository) {
+    public AlbumController(CrudRepository<Album, String> repository, ApplicationEventPublisher eventPublisher) {
         this.repository = repository;
+        this.eventPublisher = eventPublisher;
     }
 
     @RequestMapping(method = RequestMethod.GET)
@@ -29,13 +33,17 @@ public class AlbumController {
     @RequestMapping(method = RequestMethod.PUT)
     public Album add(@RequestBody @Valid Album album) {
         logger.info("Adding album " + album.getId());
-        return repository.save(album);
+        Album saved = repository.save(album);
+        eventPublisher.publishEvent(new AlbumChangedEvent(saved.getId()));
+        return saved;
     }
 
     @RequestMapping(method = RequestMethod.POST)
     public Album update(@RequestBody @Valid Album album) {
         logger.info("Updating album " + album.getId());
-        return repository.save(album);
+        Album saved = repository.save(album);
+        eventPublisher.publishEvent(new AlbumChangedEvent(saved.getId()));
+        return saved;
     }
 
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
@@ -48,6 +56,7 @@ public class AlbumController {
     public void deleteById(@PathVariable String id) {
         logger.info("Deleting album " + id);
         repository.deleteById(id);
+        eventPublisher.publishEvent(new AlbumChangedEvent(id));
     }
 
 }
\ No newline at end of file
@@ -47,7 +47,8 @@ public class McpConnectionController {
     public McpConnectionResponse createConnection(@RequestBody McpConnectionRequest request) {
         try {
             McpServerConnection entity = connectionService.createConnection(request.name(), request.baseUrl(),
-                    request.endpoint(), request.enabled(), request.headers());
+                    request.replicaBaseUrls(), request.endpoint(), request.enabled(), request.headers(), request.toolCacheEnabled(),
+                    request.toolCacheTtlSeconds(), request.toolCacheTtls());
             return McpConnectionResponse.fromEntity(entity);
         }
         catch (IllegalArgumentException ex) {
@@ -60,7 +61,8 @@ public class McpConnectionController {
             @RequestBody McpConnectionRequest request) {
         try {
             McpServerConnection entity = connectionService.updateConnection(id, request.name(), request.baseUrl(),
-                    request.endpoint(), request.enabled(), request.headers());
+                    request.replicaBaseUrls(), request.endpoint(), request.enabled(), request.headers(), request.toolCacheEnabled(),
+                    request.toolCacheTtlSeconds(), request.toolCacheTtls());
             return McpConnectionResponse.fromEntity(entity);
         }
         catch (IllegalArgumentException ex) {
@@ -5,7 +5,13 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.cloudfoundry.samples.music.config.mcp.DynamicMcpToolCallbackProvider;
+import org.cloudfoundry.samples.music.config.mcp.McpEndpointBalancer;
+import org.cloudfoundry.samples.music.config.mcp.McpToolMetrics;
+import org.cloudfoundry.samples.music.config.mcp.McpToolResultCache;
+import org.cloudfoundry.samples.music.service.DynamicMcpClientManager;
 import org.cloudfoundry.samples.music.service.McpServerConnectionService;
+import org.cloudfoundry.samples.music.service.support.ConnectionCircuitBreaker;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,15 +25,29 @@ import org.springframework.web.bind.annotation.RestController;
 public class McpStatusController {
 
     private final McpServerConnectionService connectionService;
+    private final DynamicMcpClientManager clientManager;
+    private final McpToolResultCache toolResultCache;
+    private final McpEndpointBalancer endpointBalancer;
+    private final McpToolMetrics toolMetrics;
 
     @Autowired(required = false)
     private ToolCallbackProvider toolCallbackProvider;
 
     @Autowired
-    public McpStatusController(ObjectProvider<McpServerConnectionService> connectionServiceProvider) {
+    public McpStatusController(ObjectProvider<McpServerConnectionService> connectionServiceProvider,
+            ObjectProvider<DynamicMcpClientManager> clientManagerProvider,
+            ObjectProvider<McpToolResultCache> toolResultCacheProvider,
+            ObjectProvider<McpEndpointBalancer> endpointBalancerProvider,
+            ObjectProvider<McpToolMetrics> toolMetricsProvider) {
         this.connectionService = connectionServiceProvider.getIfAvailable();
+        this.clientManager = clientManagerProvider.getIfAvailable();
+        this.toolResultCache = toolResultCacheProvider.getIfAvailable();
+        this.endpointBalancer = endpointBalancerProvider.getIfAvailable();
+        this.toolMetrics = toolMetricsProvider.getIfAvailable();
     }
 
+    // Polled by the UI: connections come from the service's in-memory listing and the tool
+    // count from the current tool snapshot, so a poll runs no queries and no MCP calls
     @RequestMapping(value = "/api/mcp/status", method = RequestMethod.GET)
     public Map<String, Object> getMcpStatus() {
         List<Map<String, Object>> servers = new ArrayList<>();
@@ -37,15 +57,34 @@ public class McpStatusController {
                 summary.put("id", connection.getId() != null ? connection.getId().toString() : null);
                 summary.put("name", connection.getName());
                 summary.put("baseUrl", connection.getBaseUrl());
+                if (!connection.getReplicaBaseUrls().isEmpty()) {
+                    summary.put("replicaBaseUrls", connection.getReplicaBaseUrls());
+                }
                 summary.put("endpoint", connection.getEndpoint());
                 summary.put("enabled", connection.isEnabled());
                 summary.put("status", connection.getStatus() != null ? connection.getStatus().name() : "UNKNOWN");
                 summary.put("lastSuccessfulAt", connection.getLastSuccessfulAt());
                 summary.put("lastFailureAt", connection.getLastFailureAt());
                 summary.put("lastErrorMessage", connection.getLastErrorMessage());
+                summary.put("toolCount", connection.getToolCount());
+                ConnectionCircuitBreaker.Snapshot health = clientManager != null && connection.getId() != null
+                        ? clientManager.getHealth(connection.getId()) : null;
+                if (health != null) {
+                    Map<String, Object> healthSummary = new LinkedHashMap<>();
+                    healthSummary.put("circuit", health.state().name());
+                    healthSummary.put("consecutiveFailures", health.consecutiveFailures());
+                    healthSummary.put("consecutiveCallFailures", health.consecutiveCallFailures());
+                    healthSummary.put("lastCheckedAt", health.lastCheckedAt());
+                    healthSummary.put("lastError", health.lastError());
+                    summary.put("health", healthSummary);
+                }
                 if (connection.getDefaultHeaders() != null && !connection.getDefaultHeaders().isEmpty()) {
                     summary.put("headers", connection.getDefaultHeaders());
                 }
+                summary.put("toolCacheEnabled", connection.isToolCacheEnabled());
+                if (!connection.getToolCacheTtls().isEmpty()) {
+                    summary.put("toolCacheTtls", connection.getToolCacheTtls());
+                }
                 servers.add(summary);
             });
         }
@@ -60,7 +99,8 @@ public class McpStatusController {
         int totalToolCount = 0;
         if (toolsExposed && toolCallbackProvider != null) {
             try {
-                totalToolCount = toolCallbackProvider.getToolCallbacks().length;
+                totalToolCount = toolCallbackProvider instanceof DynamicMcpToolCallbackProvider dynamicProvider
+                        ? dynamicProvider.getSnapshotToolCount() : toolCallbackProvider.getToolCallbacks().length;
             } catch (Exception e) {
                 // Fallback to sum from server entities if ToolCallbackProvider fails
                 totalToolCount = servers.stream()
@@ -79,7 +119,10 @@ public class McpStatusController {
                 "message", toolsExposed ? "MCP tools are available via dynamic registration"
                         : "No active MCP servers registered",
                 "toolCount", totalToolCount,
-                "servers", servers
+                "servers", servers,
+                "toolCache", toolResultCache != null ? toolResultCache.hitRatios() : Map.of(),
+                "endpoints", endpointBalancer != null ? endpointBalancer.snapshot() : Map.of(),
+                "tools", toolMetrics != null ? toolMetrics.summary() : Map.of()
         );
     }
 }
\ No newline at end of file
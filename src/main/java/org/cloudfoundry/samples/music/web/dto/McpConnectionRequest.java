@@ -1,8 +1,11 @@
 package org.cloudfoundry.samples.music.web.dto;
 
+import java.util.List;
 import java.util.Map;
 
-public record McpConnectionRequest(String name, String baseUrl, String endpoint, Boolean enabled,
-        Map<String, String> headers) {
+public record McpConnectionRequest(String name, String baseUrl, List<String> replicaBaseUrls, String endpoint,
+        Boolean enabled,
+        Map<String, String> headers, Boolean toolCacheEnabled, Integer toolCacheTtlSeconds,
+        Map<String, Integer> toolCacheTtls) {
 }
 
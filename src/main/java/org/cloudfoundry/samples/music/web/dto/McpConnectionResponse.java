@@ -2,14 +2,17 @@ package org.cloudfoundry.samples.music.web.dto;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.cloudfoundry.samples.music.domain.McpServerConnection;
 
-public record McpConnectionResponse(UUID id, String name, String baseUrl, String endpoint, boolean enabled,
+public record McpConnectionResponse(UUID id, String name, String baseUrl, List<String> replicaBaseUrls,
+        String endpoint, boolean enabled,
         String status, Instant lastSuccessfulAt, Instant lastFailureAt, String lastErrorMessage,
-        Integer toolCount, List<String> availableTools, String simplifiedTools) {
+        Integer toolCount, List<String> availableTools, String simplifiedTools, boolean toolCacheEnabled,
+        Integer toolCacheTtlSeconds, Map<String, Integer> toolCacheTtls) {
 
     public static McpConnectionResponse fromEntity(McpServerConnection entity) {
         List<String> tools = entity.getAvailableTools();
@@ -19,6 +22,7 @@ public record McpConnectionResponse(UUID id, String name, String baseUrl, String
             entity.getId(),
             entity.getName(),
             entity.getBaseUrl(),
+            entity.getReplicaBaseUrls(),
             entity.getEndpoint(),
             entity.isEnabled(),
             entity.getStatus().name(),
@@ -27,7 +31,10 @@ public record McpConnectionResponse(UUID id, String name, String baseUrl, String
             entity.getLastErrorMessage(),
             entity.getToolCount(),
             tools,
-            simplifiedTools
+            simplifiedTools,
+            entity.isToolCacheEnabled(),
+            entity.getToolCacheTtlSeconds(),
+            entity.getToolCacheTtls()
         );
     }
 
@@ -18,14 +18,14 @@ angular.module('info', ['ngResource']).
         $scope.chatService = ChatService;
 
         var STORAGE_KEY = 'spring-metal-chat-history';
-        var CONTEXT_STORAGE_KEY = 'spring-metal-conversation-context';
+        var CONVERSATION_ID_STORAGE_KEY = 'spring-metal-conversation-id';
 
         $scope.chat = {
             messages: [],
             input: '',
             loading: false
         };
-        $scope.conversationContext = [];
+        $scope.conversationId = null;
 
         $scope.init = function() {
             $scope.loadChatHistory();
@@ -45,45 +45,26 @@ angular.module('info', ['ngResource']).
                     }];
                 }
 
-                var storedContext = localStorage.getItem(CONTEXT_STORAGE_KEY);
-                if (storedContext) {
-                    $scope.conversationContext = JSON.parse(storedContext);
-                    console.log('Loaded conversation context with', $scope.conversationContext.length, 'messages');
-                } else {
-                    $scope.rebuildConversationContext();
-                }
+                $scope.conversationId = localStorage.getItem(CONVERSATION_ID_STORAGE_KEY) || $scope.newConversationId();
             } catch (error) {
                 console.error('Error loading chat history:', error);
                 $scope.initializeEmptyChat();
             }
         };
 
-        $scope.rebuildConversationContext = function() {
-            $scope.conversationContext = [];
-            if ($scope.chat.messages && $scope.chat.messages.length > 1) {
-                for (var i = 1; i < $scope.chat.messages.length; i++) {
-                    var msg = $scope.chat.messages[i];
-                    if (msg.role && msg.text && msg.text.trim().length > 0) {
-                        $scope.conversationContext.push({
-                            role: msg.role === 'assistant' ? 'assistant' : 'user',
-                            content: msg.text.trim(),
-                            timestamp: msg.timestamp || new Date().toISOString()
-                        });
-                    }
-                }
-
-                if ($scope.conversationContext.length > 10) {
-                    $scope.conversationContext = $scope.conversationContext.slice(-10);
-                }
-                console.log('Rebuilt conversation context with', $scope.conversationContext.length, 'messages');
+        // The server keeps the conversation history; the browser only needs its id
+        $scope.newConversationId = function() {
+            if (window.crypto && window.crypto.randomUUID) {
+                return window.crypto.randomUUID();
             }
+            return 'c' + Date.now().toString(36) + Math.random().toString(36).substring(2, 10);
         };
 
         $scope.saveChatHistory = function() {
             try {
                 localStorage.setItem(STORAGE_KEY, JSON.stringify($scope.chat.messages));
-                localStorage.setItem(CONTEXT_STORAGE_KEY, JSON.stringify($scope.conversationContext));
-                console.log('Saved chat history and context');
+                localStorage.setItem(CONVERSATION_ID_STORAGE_KEY, $scope.conversationId);
+                console.log('Saved chat history');
             } catch (error) {
                 console.error('Error saving chat history:', error);
             }
@@ -95,7 +76,7 @@ angular.module('info', ['ngResource']).
                 text: '🎸 Hi! I\'m your Boneyard assistant. Ask me anything about music!',
                 timestamp: new Date().toISOString()
             }];
-            $scope.conversationContext = [];
+            $scope.conversationId = $scope.newConversationId();
         };
 
         $scope.openBoneyardChat = function() {
@@ -132,12 +113,6 @@ angular.module('info', ['ngResource']).
             };
             $scope.chat.messages.push(userMsgEntry);
 
-            $scope.conversationContext.push({
-                role: 'user',
-                content: userMessage,
-                timestamp: new Date().toISOString()
-            });
-
             $scope.chat.input = '';
             $scope.chat.loading = true;
 
@@ -148,18 +123,40 @@ angular.module('info', ['ngResource']).
             }, 10);
 
             var requestPayload = {
-                text: userMessage
+                text: userMessage,
+                conversationId: $scope.conversationId
             };
 
-            if ($scope.conversationContext.length > 0) {
-                var contextToSend = $scope.conversationContext.slice(-6);
-                requestPayload.conversationContext = contextToSend;
-                console.log('Sending with conversation context:', contextToSend.length, 'messages');
-                console.log('Context preview:', contextToSend.map(function(msg, i) {
-                    return '[' + i + '] ' + msg.role + ': ' + (msg.content ? msg.content.substring(0, 30) + '...' : 'NO CONTENT');
-                }));
+            if (window.fetch && window.TextDecoder) {
+                $scope.streamChat(requestPayload);
+            } else {
+                $scope.postChat(requestPayload);
             }
+        };
 
+        $scope.completeAssistantMessage = function() {
+            $scope.saveChatHistory();
+            $scope.chat.loading = false;
+
+            setTimeout(function() {
+                var messagesDiv = document.getElementById('chat-messages');
+                if (messagesDiv) messagesDiv.scrollTop = messagesDiv.scrollHeight;
+            }, 50);
+        };
+
+        $scope.failAssistantMessage = function(error) {
+            console.error('Chat error:', error);
+            var errorMsgEntry = {
+                role: 'assistant',
+                text: 'Sorry, I encountered an error. Please try again.',
+                timestamp: new Date().toISOString()
+            };
+            $scope.chat.messages.push(errorMsgEntry);
+            $scope.saveChatHistory();
+            $scope.chat.loading = false;
+        };
+
+        $scope.postChat = function(requestPayload) {
             $http.post('/ai/chat', requestPayload)
                 .then(function(response) {
                     console.log('Received response:', response.data);
@@ -169,36 +166,86 @@ angular.module('info', ['ngResource']).
                         timestamp: new Date().toISOString()
                     };
                     $scope.chat.messages.push(assistantMsgEntry);
+                    $scope.completeAssistantMessage();
+                })
+                .catch($scope.failAssistantMessage);
+        };
+
+        // Consume /ai/chat/stream so tokens render as soon as the model produces them
+        $scope.streamChat = function(requestPayload) {
+            var assistantMsgEntry = null;
+            var buffer = '';
+            var decoder = new TextDecoder();
 
-                    $scope.conversationContext.push({
+            function appendToken(text) {
+                if (!assistantMsgEntry) {
+                    assistantMsgEntry = {
                         role: 'assistant',
-                        content: response.data.text,
+                        text: '',
                         timestamp: new Date().toISOString()
-                    });
+                    };
+                    $scope.chat.messages.push(assistantMsgEntry);
+                }
+                assistantMsgEntry.text += text;
+                var messagesDiv = document.getElementById('chat-messages');
+                if (messagesDiv) messagesDiv.scrollTop = messagesDiv.scrollHeight;
+            }
 
-                    if ($scope.conversationContext.length > 10) {
-                        $scope.conversationContext = $scope.conversationContext.slice(-10);
+            function handleEvent(rawEvent) {
+                var eventName = 'message';
+                var data = '';
+                rawEvent.split('\n').forEach(function(line) {
+                    if (line.indexOf('event:') === 0) {
+                        eventName = line.substring(6).trim();
+                    } else if (line.indexOf('data:') === 0) {
+                        data += line.substring(5);
                     }
+                });
+                if (!data) {
+                    return;
+                }
+                var payload = JSON.parse(data);
+                if (eventName === 'token' || eventName === 'error') {
+                    appendToken(payload.text);
+                }
+            }
 
-                    $scope.saveChatHistory();
-                    $scope.chat.loading = false;
+            function read(reader) {
+                return reader.read().then(function(result) {
+                    if (result.done) {
+                        return;
+                    }
+                    buffer += decoder.decode(result.value, {stream: true});
+                    var events = buffer.split('\n\n');
+                    buffer = events.pop();
+                    $scope.$apply(function() {
+                        events.forEach(handleEvent);
+                    });
+                    return read(reader);
+                });
+            }
 
-                    setTimeout(function() {
-                        var messagesDiv = document.getElementById('chat-messages');
-                        if (messagesDiv) messagesDiv.scrollTop = messagesDiv.scrollHeight;
-                    }, 50);
-                })
-                .catch(function(error) {
-                    console.error('Chat error:', error);
-                    var errorMsgEntry = {
-                        role: 'assistant',
-                        text: 'Sorry, I encountered an error. Please try again.',
-                        timestamp: new Date().toISOString()
-                    };
-                    $scope.chat.messages.push(errorMsgEntry);
-                    $scope.saveChatHistory();
-                    $scope.chat.loading = false;
+            fetch('/ai/chat/stream', {
+                method: 'POST',
+                headers: {'Content-Type': 'application/json', 'Accept': 'text/event-stream'},
+                body: JSON.stringify(requestPayload)
+            }).then(function(response) {
+                if (!response.ok || !response.body) {
+                    throw new Error('Streaming request failed with status ' + response.status);
+                }
+                return read(response.body.getReader());
+            }).then(function() {
+                $scope.$apply(function() {
+                    if (buffer.trim()) {
+                        handleEvent(buffer);
+                    }
+                    $scope.completeAssistantMessage();
+                });
+            }).catch(function(error) {
+                $scope.$apply(function() {
+                    $scope.failAssistantMessage(error);
                 });
+            });
         };
 
         $scope.$on('chatVisibilityChanged', function(event, isVisible) {
@@ -0,0 +1,244 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import org.cloudfoundry.samples.music.domain.Album;
+import org.cloudfoundry.samples.music.domain.AlbumChangedEvent;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.data.repository.CrudRepository;
+
+public class AlbumVectorSyncTests {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final InMemoryAlbumRepository albumRepository = new InMemoryAlbumRepository();
+
+    private final RecordingVectorStore vectorStore = new RecordingVectorStore();
+
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+
+    private final AlbumVectorSync sync = new AlbumVectorSync(vectorStore,
+            new EmbeddingIngestionPipeline(vectorStore, new SimpleMeterRegistry(), executor, 10, 1, 0,
+                    Duration.ofMillis(1), Duration.ofMillis(1)),
+            new VectorDocumentIndex(null, "public", "vector_store"), albumRepository, Duration.ofMillis(100),
+            Duration.ofMillis(20), 3, events::add, new SimpleMeterRegistry());
+
+    @After
+    public void shutdown() {
+        sync.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void changesWithinTheDelayBecomeOneFlush() throws Exception {
+        albumRepository.save(album("album-1", "Master of Puppets"));
+        albumRepository.save(album("album-2", "Rust in Peace"));
+        sync.onAlbumChanged(new AlbumChangedEvent("album-1"));
+        sync.onAlbumChanged(new AlbumChangedEvent("album-1"));
+        sync.onAlbumChanged(new AlbumChangedEvent("album-2"));
+        sync.onAlbumChanged(new AlbumChangedEvent("album-1"));
+        assertEquals(2, sync.getPendingCount());
+
+        awaitTrue(() -> sync.getPendingCount() == 0 && !events.isEmpty());
+        Thread.sleep(200);
+
+        assertEquals(1, vectorStore.batches.size());
+        assertEquals(Set.of("album-1", "album-2"),
+                Set.copyOf(vectorStore.batches.get(0).stream().map(Document::getId).toList()));
+        assertEquals(List.of(new VectorsChangedEvent("album-write")), events);
+    }
+
+    @Test
+    public void failedAlbumIsRetriedUntilItIsEmbedded() throws Exception {
+        albumRepository.save(album("album-1", "Reign in Blood"));
+        vectorStore.failuresLeft.put("album-1", 2);
+        sync.onAlbumChanged(new AlbumChangedEvent("album-1"));
+
+        awaitTrue(() -> vectorStore.embedded("album-1") == 1 && !events.isEmpty());
+
+        assertEquals(3, vectorStore.attempts("album-1"));
+        assertEquals(0, sync.getPendingCount());
+        assertEquals(List.of(new VectorsChangedEvent("album-write")), events);
+    }
+
+    @Test
+    public void albumIsGivenUpOnAfterMaxAttempts() throws Exception {
+        albumRepository.save(album("album-1", "Rejected"));
+        vectorStore.failuresLeft.put("album-1", Integer.MAX_VALUE);
+        sync.onAlbumChanged(new AlbumChangedEvent("album-1"));
+
+        awaitTrue(() -> vectorStore.attempts("album-1") == 3);
+        // Several retry delays later nothing else has been tried
+        Thread.sleep(200);
+
+        assertEquals(3, vectorStore.attempts("album-1"));
+        assertEquals(0, sync.getPendingCount());
+        assertTrue(events.isEmpty());
+
+        // A new change of the album starts counting again
+        vectorStore.failuresLeft.put("album-1", 0);
+        sync.onAlbumChanged(new AlbumChangedEvent("album-1"));
+        awaitTrue(() -> vectorStore.embedded("album-1") == 1);
+    }
+
+    @Test
+    public void deletedAlbumRemovesItsVectors() throws Exception {
+        sync.onAlbumChanged(new AlbumChangedEvent("album-9"));
+
+        awaitTrue(() -> !events.isEmpty());
+
+        assertEquals(List.of("album-9"), vectorStore.deleted);
+        assertTrue(vectorStore.batches.isEmpty());
+    }
+
+    private static Album album(String id, String title) {
+        Album album = new Album(title, "Metallica", "1986", "Metal", "", "");
+        album.setId(id);
+        return album;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class RecordingVectorStore implements VectorStore {
+
+        private final List<List<Document>> batches = new CopyOnWriteArrayList<>();
+
+        private final List<String> deleted = new CopyOnWriteArrayList<>();
+
+        private final Map<String, Integer> failuresLeft = new ConcurrentHashMap<>();
+
+        private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+
+        @Override
+        public void add(List<Document> documents) {
+            for (Document document : documents) {
+                attempts.merge(document.getId(), 1, Integer::sum);
+            }
+            for (Document document : documents) {
+                if (failuresLeft.getOrDefault(document.getId(), 0) > 0) {
+                    failuresLeft.merge(document.getId(), -1, Integer::sum);
+                    throw new IllegalStateException("Embedding service rejected the batch");
+                }
+            }
+            batches.add(List.copyOf(documents));
+        }
+
+        private int attempts(String id) {
+            return attempts.getOrDefault(id, 0);
+        }
+
+        private long embedded(String id) {
+            return batches.stream().flatMap(List::stream).filter(document -> document.getId().equals(id)).count();
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+            deleted.addAll(idList);
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+
+    private static final class InMemoryAlbumRepository implements CrudRepository<Album, String> {
+
+        private final Map<String, Album> albums = new ConcurrentHashMap<>();
+
+        @Override
+        public <S extends Album> S save(S album) {
+            albums.put(album.getId(), album);
+            return album;
+        }
+
+        @Override
+        public <S extends Album> Iterable<S> saveAll(Iterable<S> entities) {
+            List<S> saved = new ArrayList<>();
+            entities.forEach(album -> saved.add(save(album)));
+            return saved;
+        }
+
+        @Override
+        public Optional<Album> findById(String id) {
+            return Optional.ofNullable(albums.get(id));
+        }
+
+        @Override
+        public boolean existsById(String id) {
+            return albums.containsKey(id);
+        }
+
+        @Override
+        public Iterable<Album> findAll() {
+            return List.copyOf(albums.values());
+        }
+
+        @Override
+        public Iterable<Album> findAllById(Iterable<String> ids) {
+            List<Album> found = new ArrayList<>();
+            ids.forEach(id -> findById(id).ifPresent(found::add));
+            return found;
+        }
+
+        @Override
+        public long count() {
+            return albums.size();
+        }
+
+        @Override
+        public void deleteById(String id) {
+            albums.remove(id);
+        }
+
+        @Override
+        public void delete(Album album) {
+            albums.remove(album.getId());
+        }
+
+        @Override
+        public void deleteAllById(Iterable<? extends String> ids) {
+            ids.forEach(albums::remove);
+        }
+
+        @Override
+        public void deleteAll(Iterable<? extends Album> entities) {
+            entities.forEach(this::delete);
+        }
+
+        @Override
+        public void deleteAll() {
+            albums.clear();
+        }
+    }
+}
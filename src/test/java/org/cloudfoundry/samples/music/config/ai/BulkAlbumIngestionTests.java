@@ -0,0 +1,231 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import org.cloudfoundry.samples.music.domain.Album;
+import org.cloudfoundry.samples.music.domain.AlbumChangedEvent;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.data.repository.CrudRepository;
+
+public class BulkAlbumIngestionTests {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final InMemoryAlbumRepository albumRepository = new InMemoryAlbumRepository();
+
+    private final RecordingVectorStore vectorStore = new RecordingVectorStore();
+
+    private final List<Object> events = new ArrayList<>();
+
+    private final BulkAlbumIngestion ingestion = new BulkAlbumIngestion(new ObjectMapper(), albumRepository,
+            new EmbeddingIngestionPipeline(vectorStore, new SimpleMeterRegistry(), executor, 1, 2, 0,
+                    Duration.ofMillis(1), Duration.ofMillis(1)),
+            new VectorDocumentIndex(null, "public", "vector_store"), events::add, 1);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void reportsEachRecordByLine() {
+        String body = """
+                {"title":"Ride the Lightning","artist":"Metallica"}
+
+                not json
+                {"title":"Rejected","artist":"Anthrax"}
+                {"title":"Peace Sells","artist":"Megadeth"}
+                """;
+        BulkAlbumIngestion.BulkIngestionReport report = ingestion.ingest(stream(body));
+
+        assertEquals(4, report.records());
+        assertEquals(2, report.indexed());
+        assertEquals(1, report.failed());
+        assertEquals(1, report.invalid());
+        assertFalse(report.isComplete());
+        assertEquals(List.of(1, 3, 4, 5), report.results().stream().map(BulkAlbumIngestion.RecordResult::line).toList());
+        assertEquals(List.of(BulkAlbumIngestion.STATUS_INDEXED, BulkAlbumIngestion.STATUS_INVALID,
+                BulkAlbumIngestion.STATUS_FAILED, BulkAlbumIngestion.STATUS_INDEXED),
+                report.results().stream().map(BulkAlbumIngestion.RecordResult::status).toList());
+
+        // The failed id is the saved album whose vectors could not be written
+        BulkAlbumIngestion.RecordResult failed = report.results().get(2);
+        assertEquals("Rejected", albumRepository.albums.get(failed.id()).getTitle());
+        assertEquals("Embedding failed", failed.error());
+        assertEquals(List.of(new AlbumChangedEvent(null)), events);
+    }
+
+    @Test
+    public void albumsThatCannotBeSavedAreNotEmbedded() {
+        BulkAlbumIngestion.BulkIngestionReport report = ingestion
+            .ingest(stream("{\"title\":\"Unsaveable\",\"artist\":\"Slayer\"}\n"));
+
+        assertEquals(1, report.failed());
+        assertTrue(report.results().get(0).error().startsWith("Could not be saved"));
+        assertTrue(vectorStore.added.isEmpty());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void readFailureKeepsRecordsReadSoFar() {
+        String lines = """
+                {"title":"Kill 'Em All","artist":"Metallica"}
+                {"title":"Rust in Peace","artist":"Megadeth"}
+                """;
+        InputStream body = new SequenceInputStream(stream(lines), new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset by peer");
+            }
+        });
+        BulkAlbumIngestion.BulkIngestionReport report = ingestion.ingest(body);
+
+        assertNotNull(report.readError());
+        assertTrue(report.readError().contains("after line 2"));
+        assertEquals(2, report.indexed());
+        assertEquals(2, vectorStore.added.size());
+        assertFalse(report.isComplete());
+        assertEquals(List.of(new AlbumChangedEvent(null)), events);
+    }
+
+    @Test
+    public void completeLoadHasNoReadError() {
+        BulkAlbumIngestion.BulkIngestionReport report = ingestion
+            .ingest(stream("{\"title\":\"Master of Puppets\",\"artist\":\"Metallica\"}"));
+        assertNull(report.readError());
+        assertTrue(report.isComplete());
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class RecordingVectorStore implements VectorStore {
+
+        private final List<Document> added = new ArrayList<>();
+
+        @Override
+        public void add(List<Document> documents) {
+            if (documents.stream().anyMatch(document -> document.getText().contains("Rejected"))) {
+                throw new IllegalStateException("Embedding service rejected the batch");
+            }
+            added.addAll(documents);
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+
+    private static final class InMemoryAlbumRepository implements CrudRepository<Album, String> {
+
+        private final Map<String, Album> albums = new LinkedHashMap<>();
+
+        @Override
+        public <S extends Album> S save(S album) {
+            if ("Unsaveable".equals(album.getTitle())) {
+                throw new IllegalStateException("constraint violation");
+            }
+            if (album.getId() == null) {
+                album.setId("album-" + (albums.size() + 1));
+            }
+            albums.put(album.getId(), album);
+            return album;
+        }
+
+        @Override
+        public <S extends Album> Iterable<S> saveAll(Iterable<S> entities) {
+            List<S> saved = new ArrayList<>();
+            entities.forEach(album -> saved.add(save(album)));
+            return saved;
+        }
+
+        @Override
+        public Optional<Album> findById(String id) {
+            return Optional.ofNullable(albums.get(id));
+        }
+
+        @Override
+        public boolean existsById(String id) {
+            return albums.containsKey(id);
+        }
+
+        @Override
+        public Iterable<Album> findAll() {
+            return List.copyOf(albums.values());
+        }
+
+        @Override
+        public Iterable<Album> findAllById(Iterable<String> ids) {
+            List<Album> found = new ArrayList<>();
+            ids.forEach(id -> findById(id).ifPresent(found::add));
+            return found;
+        }
+
+        @Override
+        public long count() {
+            return albums.size();
+        }
+
+        @Override
+        public void deleteById(String id) {
+            albums.remove(id);
+        }
+
+        @Override
+        public void delete(Album album) {
+            albums.remove(album.getId());
+        }
+
+        @Override
+        public void deleteAllById(Iterable<? extends String> ids) {
+            ids.forEach(albums::remove);
+        }
+
+        @Override
+        public void deleteAll(Iterable<? extends Album> entities) {
+            entities.forEach(this::delete);
+        }
+
+        @Override
+        public void deleteAll() {
+            albums.clear();
+        }
+    }
+}
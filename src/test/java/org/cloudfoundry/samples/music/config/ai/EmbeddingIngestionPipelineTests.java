@@ -0,0 +1,96 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.ai.document.Document;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+public class EmbeddingIngestionPipelineTests {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final EmbeddingIngestionPipeline pipeline = new EmbeddingIngestionPipeline(null, new SimpleMeterRegistry(),
+            executor, 1, 4, 3, Duration.ofMillis(1), Duration.ofMillis(1));
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void throttlingHalvesConcurrencyAndSuccessGrowsItBack() {
+        AtomicInteger throttles = new AtomicInteger(1);
+        EmbeddingIngestionPipeline.IngestionResult throttled = pipeline.ingest("test", documents(1), 1, batch -> {
+            if (throttles.getAndDecrement() > 0) {
+                throw new RuntimeException("429 - Too Many Requests");
+            }
+        });
+        assertEquals(1, throttled.succeeded());
+        assertEquals(2, pipeline.getConcurrencyLimit());
+
+        // One step up after a full round of successes at the current limit: 2 batches, then 3
+        pipeline.ingest("test", documents(2), 1, batch -> {
+        });
+        assertEquals(3, pipeline.getConcurrencyLimit());
+        pipeline.ingest("test", documents(10), 1, batch -> {
+        });
+        assertEquals(4, pipeline.getConcurrencyLimit());
+    }
+
+    @Test
+    public void givesUpAfterMaxRetriesAndReportsFailedIds() {
+        AtomicInteger attempts = new AtomicInteger();
+        EmbeddingIngestionPipeline.IngestionResult result = pipeline.ingest("test", documents(1), 1, batch -> {
+            attempts.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+        });
+        assertEquals(4, attempts.get());
+        assertEquals(List.of("doc-0"), result.failedIds());
+        assertEquals(1, pipeline.getConcurrencyLimit());
+    }
+
+    @Test
+    public void otherFailuresAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        EmbeddingIngestionPipeline.IngestionResult result = pipeline.ingest("test", documents(1), 1, batch -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("bad document");
+        });
+        assertEquals(1, attempts.get());
+        assertEquals(1, result.failed());
+        assertEquals(4, pipeline.getConcurrencyLimit());
+    }
+
+    @Test
+    public void detectsThrottlingAnywhereInCauseChain() {
+        assertTrue(EmbeddingIngestionPipeline.isThrottled(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        assertTrue(EmbeddingIngestionPipeline
+            .isThrottled(new IllegalStateException("embedding failed", new SocketTimeoutException("read timed out"))));
+        assertFalse(EmbeddingIngestionPipeline.isThrottled(new HttpClientErrorException(HttpStatus.BAD_REQUEST)));
+        assertFalse(EmbeddingIngestionPipeline.isThrottled(new IllegalArgumentException("bad document")));
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document("doc-" + i, "Master of Puppets " + i, Map.of()));
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,181 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+
+public class ParallelToolCallingManagerTests {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ParallelToolCallingManager manager = new ParallelToolCallingManager(
+            ToolCallingManager.builder().build(), toolName -> null,
+            DefaultToolExecutionExceptionProcessor.builder().build(), executor, 2, Duration.ofMillis(300));
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void resultsFollowTheRequestedOrderWhileCallsOverlap() {
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        ToolCallback first = tool("get_album", input -> {
+            // Only returns once the second call is running, so the calls must overlap
+            await(secondStarted);
+            return "Master of Puppets";
+        });
+        ToolCallback second = tool("get_artist", input -> {
+            secondStarted.countDown();
+            return "Metallica";
+        });
+
+        List<ToolResponseMessage.ToolResponse> responses = execute(List.of(first, second),
+                call("call-1", "get_album"), call("call-2", "get_artist"));
+
+        assertEquals(List.of("call-1", "call-2"), responses.stream().map(ToolResponseMessage.ToolResponse::id).toList());
+        assertEquals(List.of("Master of Puppets", "Metallica"),
+                responses.stream().map(ToolResponseMessage.ToolResponse::responseData).toList());
+    }
+
+    @Test
+    public void atMostMaxConcurrencyCallsRunAtOnce() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ToolCallback search = tool("search", input -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(50);
+            running.decrementAndGet();
+            return input;
+        });
+
+        List<ToolResponseMessage.ToolResponse> responses = execute(List.of(search), call("1", "search"),
+                call("2", "search"), call("3", "search"), call("4", "search"));
+
+        assertEquals(4, responses.size());
+        assertTrue("peak was " + peak.get(), peak.get() <= 2);
+    }
+
+    @Test
+    public void singleHungCallTimesOutAndIsInterrupted() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ToolCallback hung = tool("hung", input -> {
+            try {
+                Thread.sleep(10_000);
+            }
+            catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "too late";
+        });
+
+        long start = System.nanoTime();
+        List<ToolResponseMessage.ToolResponse> responses = execute(List.of(hung), call("call-1", "hung"));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        assertTrue(responses.get(0).responseData().contains("did not respond"));
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failingToolAnswersWithErrorWithoutFailingTheTurn() {
+        ToolCallback failing = new StubToolCallback("failing", input -> null) {
+
+            @Override
+            public String call(String toolInput) {
+                throw new ToolExecutionException(getToolDefinition(), new IllegalStateException("server said no"));
+            }
+        };
+        ToolCallback working = tool("working", input -> "ok");
+
+        List<ToolResponseMessage.ToolResponse> responses = execute(List.of(failing, working),
+                call("call-1", "failing"), call("call-2", "working"));
+
+        assertEquals("server said no", responses.get(0).responseData());
+        assertEquals("ok", responses.get(1).responseData());
+    }
+
+    private List<ToolResponseMessage.ToolResponse> execute(List<ToolCallback> tools, AssistantMessage.ToolCall... calls) {
+        Prompt prompt = new Prompt(new UserMessage("tell me about Metallica"),
+                ToolCallingChatOptions.builder().toolCallbacks(tools).build());
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), List.of(calls));
+        List<Message> history = manager
+            .executeToolCalls(prompt, new ChatResponse(List.of(new Generation(assistantMessage))))
+            .conversationHistory();
+        return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses();
+    }
+
+    private static AssistantMessage.ToolCall call(String id, String name) {
+        return new AssistantMessage.ToolCall(id, "function", name, "{\"id\":\"" + id + "\"}");
+    }
+
+    private static ToolCallback tool(String name, Function<String, String> body) {
+        return new StubToolCallback(name, body);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class StubToolCallback implements ToolCallback {
+
+        private final ToolDefinition definition;
+
+        private final Function<String, String> body;
+
+        StubToolCallback(String name, Function<String, String> body) {
+            this.definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+            this.body = body;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return definition;
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return body.apply(toolInput);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.content.MediaContent;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.tool.ToolCallback;
+
+public class PromptAssemblerTests {
+
+    // With one token per word the system prompt and query take 5 tokens each, every
+    // history message 10 and every document 10
+    private static final String SIX_WORDS = "one two three four five six";
+
+    private static final String TEN_WORDS = "one two three four five six seven eight nine ten";
+
+    private static final List<Message> HISTORY = List.of(new UserMessage(SIX_WORDS), new AssistantMessage(SIX_WORDS),
+            new UserMessage(SIX_WORDS), new AssistantMessage(SIX_WORDS));
+
+    private static final List<Document> DOCUMENTS = List.of(document("strong", 0.9), document("weak", 0.5),
+            document("medium", 0.7));
+
+    @Test
+    public void keepsEverythingWithinBudget() {
+        PromptAssembler.Assembly assembly = assembler(80).assemble("system", "query", HISTORY, DOCUMENTS,
+                new ToolCallback[0]);
+        assertEquals(4, assembly.history().size());
+        assertEquals(3, assembly.documents().size());
+        assertEquals(80, assembly.tokens().total());
+        assertFalse(assembly.tokens().isOverBudget());
+    }
+
+    @Test
+    public void trimsOldestHistoryBeforeDocuments() {
+        PromptAssembler.Assembly assembly = assembler(70).assemble("system", "query", HISTORY, DOCUMENTS,
+                new ToolCallback[0]);
+        // Dropping the oldest user turn fits the budget, and its orphaned reply goes with it
+        assertEquals(2, assembly.history().size());
+        assertEquals(MessageType.USER, assembly.history().get(0).getMessageType());
+        assertEquals(2, assembly.tokens().droppedMessages());
+        assertEquals(DOCUMENTS, assembly.documents());
+        assertEquals(0, assembly.tokens().droppedDocuments());
+    }
+
+    @Test
+    public void dropsLowestScoringDocumentsOnceHistoryIsGone() {
+        PromptAssembler.Assembly assembly = assembler(30).assemble("system", "query", HISTORY, DOCUMENTS,
+                new ToolCallback[0]);
+        assertTrue(assembly.history().isEmpty());
+        assertEquals(List.of("strong", "medium"), assembly.documents().stream().map(Document::getId).toList());
+        assertEquals(30, assembly.tokens().total());
+    }
+
+    @Test
+    public void reportsOverBudgetWhenFixedPartsDoNotFit() {
+        PromptAssembler.Assembly assembly = assembler(8).assemble("system", "query", HISTORY, DOCUMENTS,
+                new ToolCallback[0]);
+        assertTrue(assembly.history().isEmpty());
+        assertTrue(assembly.documents().isEmpty());
+        assertTrue(assembly.tokens().isOverBudget());
+    }
+
+    private static PromptAssembler assembler(int maxTokens) {
+        return new PromptAssembler(new WordCountEstimator(), maxTokens);
+    }
+
+    private static Document document(String id, double score) {
+        return Document.builder().id(id).text(TEN_WORDS).metadata(Map.of()).score(score).build();
+    }
+
+    private static final class WordCountEstimator implements TokenCountEstimator {
+
+        @Override
+        public int estimate(String text) {
+            return text == null || text.isBlank() ? 0 : text.trim().split("\\s+").length;
+        }
+
+        @Override
+        public int estimate(MediaContent content) {
+            return estimate(content.getText());
+        }
+
+        @Override
+        public int estimate(Iterable<MediaContent> contents) {
+            int tokens = 0;
+            for (MediaContent content : contents) {
+                tokens += estimate(content);
+            }
+            return tokens;
+        }
+    }
+}
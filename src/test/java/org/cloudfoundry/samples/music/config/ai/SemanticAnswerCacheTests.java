@@ -0,0 +1,104 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Map;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import org.cloudfoundry.samples.music.domain.AlbumChangedEvent;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+public class SemanticAnswerCacheTests {
+
+    private static final String QUESTION = "Who recorded Nevermind?";
+
+    private final SemanticAnswerCache cache = new SemanticAnswerCache(new FixedEmbeddingModel(Map.of(
+            QUESTION, new float[] {1f, 0f, 0f},
+            "who made the album nevermind", new float[] {0.95f, 0.1f, 0f},
+            "Which Nirvana album is best?", new float[] {0.7f, 0.7f, 0f},
+            "Best thrash album?", new float[] {0f, 1f, 0f})),
+            100, Duration.ofMinutes(10), 0.9, new SimpleMeterRegistry());
+
+    @Test
+    public void similarQuestionAboveThresholdIsAHit() {
+        cache.put(cache.lookup(QUESTION), "Nirvana");
+
+        SemanticAnswerCache.Lookup similar = cache.lookup("who made the album nevermind");
+        assertTrue(similar.isHit());
+        assertEquals("Nirvana", similar.answer());
+    }
+
+    @Test
+    public void questionBelowThresholdIsAMiss() {
+        cache.put(cache.lookup(QUESTION), "Nirvana");
+
+        // cos = 0.707, related but not the same question
+        assertFalse(cache.lookup("Which Nirvana album is best?").isHit());
+        assertFalse(cache.lookup("Best thrash album?").isHit());
+    }
+
+    @Test
+    public void albumAndVectorChangesClearCachedAnswers() {
+        cache.put(cache.lookup(QUESTION), "Nirvana");
+        cache.onAlbumChanged(new AlbumChangedEvent("album-1"));
+        assertFalse(cache.lookup(QUESTION).isHit());
+
+        cache.put(cache.lookup(QUESTION), "Nirvana");
+        cache.onVectorsChanged(new VectorsChangedEvent("album-write"));
+        assertFalse(cache.lookup(QUESTION).isHit());
+    }
+
+    @Test
+    public void answerComputedBeforeVectorsChangedIsNotStored() {
+        SemanticAnswerCache.Lookup lookup = cache.lookup(QUESTION);
+        // The album event cleared the cache earlier; the vectors land while the answer is generated
+        cache.onVectorsChanged(new VectorsChangedEvent("album-write"));
+        cache.put(lookup, "Nirvana, from the stale vectors");
+
+        assertFalse(cache.lookup(QUESTION).isHit());
+    }
+
+    @Test
+    public void questionThatCannotBeEmbeddedIsNeitherServedNorStored() {
+        SemanticAnswerCache.Lookup lookup = cache.lookup("unknown question");
+        assertFalse(lookup.isHit());
+        cache.put(lookup, "anything");
+        assertFalse(cache.lookup("unknown question").isHit());
+    }
+
+    private static final class FixedEmbeddingModel implements EmbeddingModel {
+
+        private final Map<String, float[]> embeddings;
+
+        private FixedEmbeddingModel(Map<String, float[]> embeddings) {
+            this.embeddings = embeddings;
+        }
+
+        @Override
+        public float[] embed(String text) {
+            float[] embedding = embeddings.get(text);
+            if (embedding == null) {
+                throw new IllegalStateException("Embedding service unavailable");
+            }
+            return embedding;
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ThinkTagFilterTests {
+
+    @Test
+    public void stripsThinkBlockWithinSingleChunk() {
+        ThinkTagFilter filter = new ThinkTagFilter();
+        assertEquals("Nevermind (1991)", filter.accept("<think>recall albums</think>\n\nNevermind (1991)"));
+        assertEquals("", filter.flush());
+    }
+
+    @Test
+    public void stripsTagsSplitAcrossChunks() {
+        ThinkTagFilter filter = new ThinkTagFilter();
+        StringBuilder out = new StringBuilder();
+        for (String chunk : new String[] {"<th", "ink>hidden", " reasoning</TH", "INK>", " Metallica", " <", "3 riffs"}) {
+            out.append(filter.accept(chunk));
+        }
+        out.append(filter.flush());
+        assertEquals("Metallica <3 riffs", out.toString());
+    }
+
+    @Test
+    public void dropsUnterminatedThinkBlockOnFlush() {
+        ThinkTagFilter filter = new ThinkTagFilter();
+        assertEquals("Answer ", filter.accept("Answer <think>still going"));
+        assertEquals("", filter.flush());
+    }
+}
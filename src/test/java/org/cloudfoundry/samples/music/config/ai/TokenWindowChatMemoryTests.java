@@ -0,0 +1,156 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.content.MediaContent;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+public class TokenWindowChatMemoryTests {
+
+    private final BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(100,
+            Duration.ofMinutes(30), new SimpleMeterRegistry());
+
+    @Test
+    public void dropsOldestMessagesOverTheCap() {
+        TokenWindowChatMemory memory = new TokenWindowChatMemory(repository, new WordCountEstimator(), 10);
+        memory.add("c1", List.of(new UserMessage("which album came first"), new AssistantMessage("Kill Em All did")));
+        memory.add("c1", List.of(new UserMessage("and the second one")));
+
+        List<Message> kept = memory.get("c1");
+        assertEquals(List.of("Kill Em All did", "and the second one"), kept.stream().map(Message::getText).toList());
+    }
+
+    @Test
+    public void keepsLatestMessageEvenWhenItAloneIsOverTheCap() {
+        TokenWindowChatMemory memory = new TokenWindowChatMemory(repository, new WordCountEstimator(), 3);
+        memory.add("c1", List.of(new UserMessage("hi")));
+        memory.add("c1", List.of(new UserMessage("tell me everything about the Black Album please")));
+
+        assertEquals(1, memory.get("c1").size());
+        assertTrue(memory.get("c1").get(0).getText().startsWith("tell me"));
+    }
+
+    @Test
+    public void conversationsAreTrimmedIndependently() {
+        TokenWindowChatMemory memory = new TokenWindowChatMemory(repository, new WordCountEstimator(), 4);
+        memory.add("c1", List.of(new UserMessage("one two three")));
+        memory.add("c2", List.of(new UserMessage("four five")));
+        memory.add("c1", List.of(new UserMessage("six seven")));
+
+        assertEquals(1, memory.get("c1").size());
+        assertEquals(1, memory.get("c2").size());
+        memory.clear("c1");
+        assertTrue(memory.get("c1").isEmpty());
+        assertFalse(memory.get("c2").isEmpty());
+    }
+
+    @Test
+    public void concurrentTurnsOnOneConversationKeepAllMessages() throws Exception {
+        // Widens the read-modify-write window so unsynchronized adds would lose messages
+        SlowRepository slow = new SlowRepository(repository);
+        TokenWindowChatMemory memory = new TokenWindowChatMemory(slow, new WordCountEstimator(), 1000);
+        int turns = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(turns);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < turns; i++) {
+                String text = "turn " + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    memory.add("c1", List.of(new UserMessage(text)));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(turns, memory.get("c1").size());
+    }
+
+    @Test
+    public void jdbcTableUsesTypesOfTheDatabase() {
+        String sqlServer = JdbcChatMemoryRepository.createTableStatement("Microsoft SQL Server");
+        assertTrue(sqlServer.contains("NVARCHAR(MAX)"));
+        assertTrue(sqlServer.contains("DATETIME2"));
+        assertFalse(sqlServer.contains("IF NOT EXISTS"));
+        assertTrue(JdbcChatMemoryRepository.createTableStatement("PostgreSQL").contains("content TEXT"));
+        assertTrue(JdbcChatMemoryRepository.createTableStatement("Oracle").contains("content CLOB"));
+        assertTrue(JdbcChatMemoryRepository.createTableStatement("MySQL").contains("content LONGTEXT"));
+    }
+
+    private static final class SlowRepository extends BoundedChatMemoryRepository {
+
+        private final BoundedChatMemoryRepository delegate;
+
+        private SlowRepository(BoundedChatMemoryRepository delegate) {
+            super(1, Duration.ofMinutes(1), new SimpleMeterRegistry());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<Message> findByConversationId(String conversationId) {
+            List<Message> messages = delegate.findByConversationId(conversationId);
+            try {
+                Thread.sleep(5);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return messages;
+        }
+
+        @Override
+        public void saveAll(String conversationId, List<Message> messages) {
+            delegate.saveAll(conversationId, messages);
+        }
+
+        @Override
+        public void deleteByConversationId(String conversationId) {
+            delegate.deleteByConversationId(conversationId);
+        }
+    }
+
+    private static final class WordCountEstimator implements TokenCountEstimator {
+
+        @Override
+        public int estimate(String text) {
+            return text == null || text.isBlank() ? 0 : text.trim().split("\\s+").length;
+        }
+
+        @Override
+        public int estimate(MediaContent content) {
+            return estimate(content.getText());
+        }
+
+        @Override
+        public int estimate(Iterable<MediaContent> contents) {
+            int tokens = 0;
+            for (MediaContent content : contents) {
+                tokens += estimate(content);
+            }
+            return tokens;
+        }
+    }
+}
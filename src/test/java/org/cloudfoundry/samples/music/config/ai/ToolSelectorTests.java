@@ -0,0 +1,94 @@
+package org.cloudfoundry.samples.music.config.ai;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+public class ToolSelectorTests {
+
+    private final CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+
+    private final ToolSelector selector = new ToolSelector(embeddingModel, 1, Set.of());
+
+    private final ToolCallback[] tools = {tool("search_artist"), tool("get_album"), tool("list_tracks")};
+
+    @Test
+    public void requestsWithFewerToolsKeepWarmedEmbeddings() {
+        selector.warmUp(tools);
+        assertEquals(3, embeddingModel.embeddedTexts.size());
+
+        // A connection behind an open circuit drops out of the per-request set
+        selector.select("metallica", new ToolCallback[] {tools[0], tools[1]});
+        selector.select("metallica", tools);
+
+        assertEquals(3, embeddingModel.embeddedTexts.size());
+    }
+
+    @Test
+    public void warmUpForgetsToolsNoLongerOffered() {
+        selector.warmUp(tools);
+        selector.warmUp(new ToolCallback[] {tools[0], tools[1]});
+        selector.select("metallica", tools);
+
+        assertEquals(4, embeddingModel.embeddedTexts.size());
+        assertEquals("list_tracks: list_tracks", embeddingModel.embeddedTexts.get(3));
+    }
+
+    private static ToolCallback tool(String name) {
+        ToolDefinition definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+        return new ToolCallback() {
+
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "";
+            }
+        };
+    }
+
+    // Tool descriptions go through embed(List); queries through embed(String)
+    private static final class CountingEmbeddingModel implements EmbeddingModel {
+
+        private final List<String> embeddedTexts = new ArrayList<>();
+
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            List<float[]> embeddings = new ArrayList<>();
+            for (String text : texts) {
+                embeddedTexts.add(text);
+                embeddings.add(new float[] {text.length(), 1f});
+            }
+            return embeddings;
+        }
+
+        @Override
+        public float[] embed(String text) {
+            return new float[] {text.length(), 1f};
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+public class McpEndpointBalancerTests {
+
+    private static final List<String> ENDPOINTS = List.of("http://mcp-0", "http://mcp-1", "http://mcp-2");
+
+    private final McpEndpointBalancer balancer = new McpEndpointBalancer(new SimpleMeterRegistry(),
+            Duration.ofMinutes(1));
+
+    @Test
+    public void lowestLatencyScoreWins() {
+        call("http://mcp-0", 50, true);
+        call("http://mcp-1", 10, true);
+        call("http://mcp-2", 30, true);
+        assertEquals(1, balancer.choose(ENDPOINTS));
+    }
+
+    @Test
+    public void callsInFlightWeighTheScore() {
+        call("http://mcp-0", 20, true);
+        call("http://mcp-1", 15, true);
+        call("http://mcp-2", 30, true);
+        balancer.started("http://mcp-1");
+        assertEquals(0, balancer.choose(ENDPOINTS));
+    }
+
+    @Test
+    public void healthyEndpointPreferredOverFasterUnhealthyOne() {
+        call("http://mcp-0", 5, true);
+        call("http://mcp-1", 100, true);
+        call("http://mcp-2", 200, true);
+        call("http://mcp-0", 1, false);
+        assertEquals(1, balancer.choose(ENDPOINTS));
+        assertEquals(Boolean.FALSE, balancer.snapshot().get("http://mcp-0").get("healthy"));
+    }
+
+    @Test
+    public void unhealthyEndpointUsedWhenNoneIsLeft() {
+        List<String> endpoints = List.of("http://mcp-0", "http://mcp-1");
+        call("http://mcp-0", 5, true);
+        call("http://mcp-1", 50, true);
+        call("http://mcp-0", 1, false);
+        call("http://mcp-1", 1, false);
+        assertEquals(0, balancer.choose(endpoints));
+    }
+
+    @Test
+    public void toolErrorLeavesEndpointHealthy() {
+        call("http://mcp-0", 5, true);
+        call("http://mcp-1", 50, true);
+        balancer.started("http://mcp-0");
+        balancer.toolFailed("http://mcp-0");
+        assertEquals(0, balancer.choose(List.of("http://mcp-0", "http://mcp-1")));
+    }
+
+    @Test
+    public void onlyTransportErrorsAndTimeoutsAreEndpointFailures() {
+        assertTrue(McpEndpointBalancer.isEndpointFailure(new RuntimeException(new IOException("connection reset"))));
+        assertTrue(McpEndpointBalancer
+            .isEndpointFailure(new IllegalStateException("Timeout on blocking read for 30000000000 NANOSECONDS")));
+        assertFalse(McpEndpointBalancer.isEndpointFailure(new IllegalStateException("Error calling tool: not found")));
+    }
+
+    private void call(String endpoint, long millis, boolean success) {
+        balancer.started(endpoint);
+        balancer.finished(endpoint, TimeUnit.MILLISECONDS.toNanos(millis), success);
+    }
+}
@@ -0,0 +1,93 @@
+package org.cloudfoundry.samples.music.config.mcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import org.cloudfoundry.samples.music.domain.McpServerConnection;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+public class McpToolResultCacheTests {
+
+    private final McpToolResultCache cache = new McpToolResultCache(new ObjectMapper(), new SimpleMeterRegistry(),
+            100, Duration.ofMinutes(5));
+
+    @Test
+    public void perToolZeroOptsOutOfConnectionWideCaching() {
+        McpServerConnection connection = connection(true, null, Map.of("search_artist", 0));
+        assertNull(cache.ttlFor(connection, tool("search_artist")));
+        assertEquals(Duration.ofMinutes(5), cache.ttlFor(connection, tool("get_album")));
+    }
+
+    @Test
+    public void perToolTtlWinsOverConnectionSettings() {
+        McpServerConnection connection = connection(false, 300, Map.of("search_artist", 60));
+        assertEquals(Duration.ofSeconds(60), cache.ttlFor(connection, tool("search_artist")));
+        assertNull(cache.ttlFor(connection, tool("get_album")));
+    }
+
+    @Test
+    public void connectionTtlReplacesDefault() {
+        McpServerConnection connection = connection(true, 30, Map.of());
+        assertEquals(Duration.ofSeconds(30), cache.ttlFor(connection, tool("get_album")));
+        assertNull(cache.ttlFor(connection(true, 0, Map.of()), tool("get_album")));
+    }
+
+    @Test
+    public void unsavedConnectionIsNotCached() {
+        McpServerConnection connection = connection(true, null, Map.of());
+        connection.setId(null);
+        assertNull(cache.ttlFor(connection, tool("get_album")));
+    }
+
+    @Test
+    public void argumentOrderAndWhitespaceShareOneEntry() {
+        UUID connectionId = UUID.randomUUID();
+        AtomicInteger calls = new AtomicInteger();
+        String first = cache.getOrCall(connectionId, "search_artist", "{\"name\":\"Metallica\",\"limit\":5}",
+                Duration.ofMinutes(1), () -> "result-" + calls.incrementAndGet());
+        String second = cache.getOrCall(connectionId, "search_artist", "{ \"limit\": 5, \"name\": \"Metallica\" }",
+                Duration.ofMinutes(1), () -> "result-" + calls.incrementAndGet());
+        assertEquals("result-1", first);
+        assertEquals("result-1", second);
+        assertEquals(1, calls.get());
+
+        cache.getOrCall(connectionId, "search_artist", "{\"name\":\"Megadeth\",\"limit\":5}", Duration.ofMinutes(1),
+                () -> "result-" + calls.incrementAndGet());
+        assertEquals(2, calls.get());
+    }
+
+    private static McpServerConnection connection(boolean cacheEnabled, Integer ttlSeconds, Map<String, Integer> ttls) {
+        McpServerConnection connection = new McpServerConnection();
+        connection.setId(UUID.randomUUID());
+        connection.setToolCacheEnabled(cacheEnabled);
+        connection.setToolCacheTtlSeconds(ttlSeconds);
+        connection.setToolCacheTtls(ttls);
+        return connection;
+    }
+
+    private static ToolCallback tool(String name) {
+        ToolDefinition definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+        return new ToolCallback() {
+
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "";
+            }
+        };
+    }
+}
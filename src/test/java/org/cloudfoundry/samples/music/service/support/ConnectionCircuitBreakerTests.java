@@ -0,0 +1,81 @@
+package org.cloudfoundry.samples.music.service.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+public class ConnectionCircuitBreakerTests {
+
+    @Test
+    public void opensAfterThresholdConsecutiveFailures() {
+        ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(3, Duration.ofMinutes(1));
+        assertFalse(breaker.recordFailure("refused"));
+        assertFalse(breaker.recordFailure("refused"));
+        assertEquals(ConnectionCircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allowsTraffic());
+
+        assertTrue(breaker.recordFailure("refused"));
+        assertEquals(ConnectionCircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.allowsTraffic());
+        assertFalse(breaker.shouldCheck());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(2, Duration.ofMinutes(1));
+        breaker.recordFailure("refused");
+        assertFalse(breaker.recordSuccess());
+        assertFalse(breaker.recordFailure("refused"));
+        assertEquals(ConnectionCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void halfOpenProbeSuccessClosesCircuit() {
+        ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(1, Duration.ZERO);
+        assertTrue(breaker.recordFailure("refused"));
+
+        assertTrue(breaker.shouldCheck());
+        assertEquals(ConnectionCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.allowsTraffic());
+
+        assertTrue(breaker.recordSuccess());
+        assertEquals(ConnectionCircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allowsTraffic());
+    }
+
+    @Test
+    public void halfOpenProbeFailureReopensCircuit() {
+        ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(3, Duration.ZERO);
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure("refused");
+        }
+        assertTrue(breaker.shouldCheck());
+
+        // A single failed probe is enough, and it does not count as a fresh opening
+        assertFalse(breaker.recordFailure("still refused"));
+        assertEquals(ConnectionCircuitBreaker.State.OPEN, breaker.state());
+        assertEquals("still refused", breaker.snapshot().lastError());
+    }
+
+    @Test
+    public void callFailuresOpenCircuitDespiteSuccessfulPings() {
+        ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(2, Duration.ofMinutes(1));
+        assertFalse(breaker.recordCallFailure("timed out"));
+        breaker.recordSuccess();
+        assertTrue(breaker.recordCallFailure("timed out"));
+        assertEquals(ConnectionCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void successfulCallResetsCallFailures() {
+        ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(2, Duration.ofMinutes(1));
+        breaker.recordCallFailure("timed out");
+        breaker.recordCallSuccess();
+        assertFalse(breaker.recordCallFailure("timed out"));
+        assertEquals(1, breaker.snapshot().consecutiveCallFailures());
+    }
+}